@@ -0,0 +1,807 @@
+package cn.kanejin.commons.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * 二进制数据与文本之间的编码和解码
+ *
+ * 支持十六进制、Base64、URL安全的Base64和Base62，编码和解码都是查表完成的。
+ * 解码时不抛出异常，输入不合法时返回null、-1或false。
+ *
+ * 例如：
+ * <code>ByteCodec.HEX.encode(new byte[]{1, (byte) 0xAB})</code>的返回值为<code>"01ab"</code>
+ *
+ * 本类的实例是线程安全的。
+ *
+ * @author Kane Jin
+ */
+public abstract class ByteCodec {
+
+    /**
+     * 十六进制，编码时输出小写字母，解码时不区分大小写
+     */
+    public static final ByteCodec HEX = new Hex();
+
+    /**
+     * 标准的Base64（RFC 4648），编码时输出'='补位，解码时补位可有可无
+     */
+    public static final ByteCodec BASE64 = new Base64(
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", true);
+
+    /**
+     * URL安全的Base64（RFC 4648），编码时不补位，解码时补位可有可无
+     */
+    public static final ByteCodec BASE64_URL = new Base64(
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_", false);
+
+    /**
+     * Base62，字母表与StringUtils.random相同（a-zA-Z0-9）
+     *
+     * 把整个数据看作一个大整数转换进制，开头的每个0字节编码为一个'a'。
+     * 编码和解码的时间与长度的平方成正比，适用于ID、令牌等较短的数据，不支持流式编码。
+     */
+    public static final ByteCodec BASE62 = new Base62();
+
+    private static final int STREAM_BLOCKS = 1024;
+
+    /**
+     * 每组字节数和每组字符数，不能分组编码时为0
+     */
+    private final int blockBytes;
+    private final int blockChars;
+
+    ByteCodec(int blockBytes, int blockChars) {
+        this.blockBytes = blockBytes;
+        this.blockChars = blockChars;
+    }
+
+    /**
+     * 计算编码后的最大长度
+     *
+     * @param length 数据的字节数
+     * @return 编码后的最大字符数
+     */
+    public abstract int encodedLength(int length);
+
+    /**
+     * 计算解码后的最大长度
+     *
+     * @param length 编码后的字符数
+     * @return 解码后的最大字节数
+     */
+    public abstract int maxDecodedLength(int length);
+
+    /**
+     * 编码，chars和bytes只有一个不为null
+     *
+     * @return 写入的字符个数
+     */
+    abstract int encode(byte[] src, int offset, int length, char[] chars, byte[] bytes, int dstOffset);
+
+    /**
+     * 解码，chars和bytes只有一个不为null；dst为null时只校验
+     *
+     * @return 解码后的字节数，输入不合法时返回-1
+     */
+    abstract int decode(CharSequence chars, byte[] bytes, int offset, int length, byte[] dst, int dstOffset);
+
+    /**
+     * 编码
+     *
+     * @param data 数据
+     * @return 编码后的字符串
+     */
+    public String encode(byte[] data) {
+        char[] chars = new char[encodedLength(data.length)];
+
+        return new String(chars, 0, encode(data, 0, data.length, chars, null, 0));
+    }
+
+    /**
+     * 编码到字符数组中
+     *
+     * @param src 数据
+     * @param offset 数据的开始位置
+     * @param length 数据的长度
+     * @param dst 字符数组，从dstOffset开始至少要有encodedLength(length)个字符的空间
+     * @param dstOffset 字符数组的开始位置
+     * @return 写入的字符个数
+     */
+    public int encode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+        checkRange(src.length, offset, length);
+        checkSpace(dst.length, dstOffset, encodedLength(length));
+
+        return encode(src, offset, length, dst, null, dstOffset);
+    }
+
+    /**
+     * 编码为ASCII字节
+     *
+     * @param src 数据
+     * @param offset 数据的开始位置
+     * @param length 数据的长度
+     * @param dst 字节数组，从dstOffset开始至少要有encodedLength(length)个字节的空间
+     * @param dstOffset 字节数组的开始位置
+     * @return 写入的字节个数
+     */
+    public int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+        checkRange(src.length, offset, length);
+        checkSpace(dst.length, dstOffset, encodedLength(length));
+
+        return encode(src, offset, length, null, dst, dstOffset);
+    }
+
+    /**
+     * 把ByteBuffer中从position到limit的数据编码后追加到Appendable中
+     *
+     * 编码后ByteBuffer的position移到limit
+     *
+     * @param src 数据
+     * @param out 输出
+     * @throws IOException 输出出错
+     */
+    public void encode(ByteBuffer src, Appendable out) throws IOException {
+        if (blockBytes == 0) {
+            byte[] data = new byte[src.remaining()];
+            src.get(data);
+            out.append(encode(data));
+            return;
+        }
+
+        byte[] bytes = new byte[Math.min(src.remaining(), blockBytes * STREAM_BLOCKS)];
+        char[] chars = new char[encodedLength(bytes.length)];
+
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), bytes.length);
+            src.get(bytes, 0, n);
+            out.append(CharBuffer.wrap(chars, 0, encode(bytes, 0, n, chars, null, 0)));
+        }
+    }
+
+    /**
+     * 解码
+     *
+     * @param src 编码后的字符串
+     * @return 解码后的数据，如果字符串为null或不合法，返回null
+     */
+    public byte[] decode(CharSequence src) {
+        if (src == null)
+            return null;
+
+        byte[] dst = new byte[maxDecodedLength(src.length())];
+        int n = decode(src, null, 0, src.length(), dst, 0);
+
+        if (n < 0)
+            return null;
+
+        return n == dst.length ? dst : Arrays.copyOf(dst, n);
+    }
+
+    /**
+     * 解码到字节数组中
+     *
+     * @param src 编码后的字符串
+     * @param offset 字符串的开始位置
+     * @param length 字符串的长度
+     * @param dst 字节数组
+     * @param dstOffset 字节数组的开始位置
+     * @return 写入的字节个数，如果输入不合法，返回-1
+     * @throws IndexOutOfBoundsException 字节数组的空间不够
+     */
+    public int decode(CharSequence src, int offset, int length, byte[] dst, int dstOffset) {
+        checkRange(src.length(), offset, length);
+
+        return decode(src, null, offset, length, dst, dstOffset);
+    }
+
+    /**
+     * 解码ASCII字节到字节数组中
+     *
+     * @param src 编码后的ASCII字节
+     * @param offset 开始位置
+     * @param length 长度
+     * @param dst 字节数组
+     * @param dstOffset 字节数组的开始位置
+     * @return 写入的字节个数，如果输入不合法，返回-1
+     * @throws IndexOutOfBoundsException 字节数组的空间不够
+     */
+    public int decode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+        checkRange(src.length, offset, length);
+
+        return decode(null, src, offset, length, dst, dstOffset);
+    }
+
+    /**
+     * 解码到ByteBuffer中
+     *
+     * 解码成功时ByteBuffer的position后移解码后的字节数，否则ByteBuffer不变
+     *
+     * @param src 编码后的字符串
+     * @param dst 输出
+     * @return 如果输入合法，返回true，否则返回false
+     * @throws java.nio.BufferOverflowException ByteBuffer的空间不够
+     */
+    public boolean decode(CharSequence src, ByteBuffer dst) {
+        if (dst.hasArray() && dst.remaining() >= maxDecodedLength(src.length())) {
+            int position = dst.position();
+            int n = decode(src, 0, src.length(), dst.array(), dst.arrayOffset() + position);
+            if (n < 0)
+                return false;
+            dst.position(position + n);
+            return true;
+        }
+
+        byte[] data = decode(src);
+        if (data == null)
+            return false;
+
+        dst.put(data);
+        return true;
+    }
+
+    /**
+     * 校验编码后的字符串是否合法
+     *
+     * @param src 编码后的字符串
+     * @return 如果合法，返回true，否则返回false
+     */
+    public boolean isValid(CharSequence src) {
+        return src != null && decode(src, null, 0, src.length(), null, 0) >= 0;
+    }
+
+    /**
+     * 创建编码输出流，写入的数据编码后追加到Appendable中
+     *
+     * 关闭输出流时输出最后不足一组的数据，如果Appendable是Closeable，也一起关闭
+     *
+     * @param out 输出
+     * @return 编码输出流
+     * @throws UnsupportedOperationException 编码不支持流式处理，例如BASE62
+     */
+    public OutputStream encodingStream(Appendable out) {
+        if (blockBytes == 0)
+            throw new UnsupportedOperationException("Streaming is not supported by " + this);
+
+        return new EncodingOutputStream(out);
+    }
+
+    /**
+     * 创建解码输入流，读取Reader中的字符并解码
+     *
+     * 输入不合法时，读取方法抛出IOException
+     *
+     * @param in 输入
+     * @return 解码输入流
+     * @throws UnsupportedOperationException 编码不支持流式处理，例如BASE62
+     */
+    public InputStream decodingStream(Reader in) {
+        if (blockBytes == 0)
+            throw new UnsupportedOperationException("Streaming is not supported by " + this);
+
+        return new DecodingInputStream(in);
+    }
+
+    private static void checkRange(int arrayLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length)
+            throw new IndexOutOfBoundsException("Offset : " + offset + ", Length : " + length + ", Size : " + arrayLength);
+    }
+
+    private static void checkSpace(int arrayLength, int offset, int required) {
+        if (offset < 0 || arrayLength - offset < required)
+            throw new IndexOutOfBoundsException("Not enough space : " + (arrayLength - offset) + ", Required : " + required);
+    }
+
+    private static char charAt(CharSequence chars, byte[] bytes, int index) {
+        return chars != null ? chars.charAt(index) : (char) (bytes[index] & 0xFF);
+    }
+
+    /**
+     * 字符在字母表中的值，不在字母表中时为-1
+     */
+    private static byte[] decodeTable(String alphabet) {
+        byte[] table = new byte[128];
+        Arrays.fill(table, (byte) -1);
+        for (int i = 0; i < alphabet.length(); i++)
+            table[alphabet.charAt(i)] = (byte) i;
+
+        return table;
+    }
+
+    private static final class Hex extends ByteCodec {
+
+        private static final String DIGITS = "0123456789abcdef";
+
+        /**
+         * 每个字节对应的两个字符
+         */
+        private static final char[] PAIRS = new char[512];
+
+        private static final byte[] VALUES = decodeTable(DIGITS);
+
+        static {
+            for (int i = 0; i < 256; i++) {
+                PAIRS[i << 1] = DIGITS.charAt(i >>> 4);
+                PAIRS[i << 1 | 1] = DIGITS.charAt(i & 0x0F);
+            }
+            for (int i = 10; i < 16; i++)
+                VALUES[DIGITS.charAt(i) - 'a' + 'A'] = (byte) i;
+        }
+
+        private Hex() {
+            super(1, 2);
+        }
+
+        @Override
+        public int encodedLength(int length) {
+            return length << 1;
+        }
+
+        @Override
+        public int maxDecodedLength(int length) {
+            return length >> 1;
+        }
+
+        @Override
+        int encode(byte[] src, int offset, int length, char[] chars, byte[] bytes, int dstOffset) {
+            int j = dstOffset;
+
+            if (chars != null) {
+                for (int i = offset; i < offset + length; i++) {
+                    int p = (src[i] & 0xFF) << 1;
+                    chars[j++] = PAIRS[p];
+                    chars[j++] = PAIRS[p + 1];
+                }
+            } else {
+                for (int i = offset; i < offset + length; i++) {
+                    int p = (src[i] & 0xFF) << 1;
+                    bytes[j++] = (byte) PAIRS[p];
+                    bytes[j++] = (byte) PAIRS[p + 1];
+                }
+            }
+
+            return j - dstOffset;
+        }
+
+        @Override
+        int decode(CharSequence chars, byte[] bytes, int offset, int length, byte[] dst, int dstOffset) {
+            if ((length & 1) != 0)
+                return -1;
+            if (dst != null)
+                checkSpace(dst.length, dstOffset, length >> 1);
+
+            int j = dstOffset;
+            for (int i = offset; i < offset + length; i += 2) {
+                char c1 = charAt(chars, bytes, i);
+                char c2 = charAt(chars, bytes, i + 1);
+                if ((c1 | c2) >= 128)
+                    return -1;
+
+                int hi = VALUES[c1];
+                int lo = VALUES[c2];
+                if ((hi | lo) < 0)
+                    return -1;
+
+                if (dst != null)
+                    dst[j] = (byte) (hi << 4 | lo);
+                j++;
+            }
+
+            return j - dstOffset;
+        }
+
+        @Override
+        public String toString() {
+            return "HEX";
+        }
+    }
+
+    private static final class Base64 extends ByteCodec {
+
+        private final char[] alphabet;
+        private final byte[] values;
+        private final boolean padding;
+
+        private Base64(String alphabet, boolean padding) {
+            super(3, 4);
+            this.alphabet = alphabet.toCharArray();
+            this.values = decodeTable(alphabet);
+            this.padding = padding;
+        }
+
+        @Override
+        public int encodedLength(int length) {
+            return padding ? (length + 2) / 3 * 4 : (length / 3 * 4) + (length % 3 == 0 ? 0 : length % 3 + 1);
+        }
+
+        @Override
+        public int maxDecodedLength(int length) {
+            return length / 4 * 3 + (length % 4 == 0 ? 0 : length % 4 - 1);
+        }
+
+        @Override
+        int encode(byte[] src, int offset, int length, char[] chars, byte[] bytes, int dstOffset) {
+            int j = dstOffset;
+            int end = offset + length - length % 3;
+            int i = offset;
+
+            for (; i < end; i += 3) {
+                int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+                j = put(chars, bytes, j, alphabet[bits >>> 18]);
+                j = put(chars, bytes, j, alphabet[bits >>> 12 & 0x3F]);
+                j = put(chars, bytes, j, alphabet[bits >>> 6 & 0x3F]);
+                j = put(chars, bytes, j, alphabet[bits & 0x3F]);
+            }
+
+            int remaining = offset + length - i;
+            if (remaining > 0) {
+                int bits = (src[i] & 0xFF) << 16 | (remaining == 2 ? (src[i + 1] & 0xFF) << 8 : 0);
+                j = put(chars, bytes, j, alphabet[bits >>> 18]);
+                j = put(chars, bytes, j, alphabet[bits >>> 12 & 0x3F]);
+                if (remaining == 2)
+                    j = put(chars, bytes, j, alphabet[bits >>> 6 & 0x3F]);
+                else if (padding)
+                    j = put(chars, bytes, j, '=');
+                if (padding)
+                    j = put(chars, bytes, j, '=');
+            }
+
+            return j - dstOffset;
+        }
+
+        private static int put(char[] chars, byte[] bytes, int index, char c) {
+            if (chars != null)
+                chars[index] = c;
+            else
+                bytes[index] = (byte) c;
+            return index + 1;
+        }
+
+        @Override
+        int decode(CharSequence chars, byte[] bytes, int offset, int length, byte[] dst, int dstOffset) {
+            // 去掉末尾的补位，有补位时长度必须是4的倍数
+            int end = offset + length;
+            if ((length & 3) == 0) {
+                for (int k = 0; k < 2 && end > offset && charAt(chars, bytes, end - 1) == '='; k++)
+                    end--;
+            }
+
+            int n = end - offset;
+            if ((n & 3) == 1)
+                return -1;
+
+            int decoded = n / 4 * 3 + ((n & 3) == 0 ? 0 : (n & 3) - 1);
+            if (dst != null)
+                checkSpace(dst.length, dstOffset, decoded);
+
+            int j = dstOffset;
+            int i = offset;
+            int blockEnd = offset + (n & ~3);
+
+            for (; i < blockEnd; i += 4) {
+                int a = value(chars, bytes, i);
+                int b = value(chars, bytes, i + 1);
+                int c = value(chars, bytes, i + 2);
+                int d = value(chars, bytes, i + 3);
+                if ((a | b | c | d) < 0)
+                    return -1;
+
+                int bits = a << 18 | b << 12 | c << 6 | d;
+                if (dst != null) {
+                    dst[j] = (byte) (bits >>> 16);
+                    dst[j + 1] = (byte) (bits >>> 8);
+                    dst[j + 2] = (byte) bits;
+                }
+                j += 3;
+            }
+
+            if (i < end) {
+                int a = value(chars, bytes, i);
+                int b = value(chars, bytes, i + 1);
+                int c = end - i == 3 ? value(chars, bytes, i + 2) : 0;
+                if ((a | b | c) < 0)
+                    return -1;
+
+                int bits = a << 18 | b << 12 | c << 6;
+                if (dst != null) {
+                    dst[j] = (byte) (bits >>> 16);
+                    if (end - i == 3)
+                        dst[j + 1] = (byte) (bits >>> 8);
+                }
+                j += end - i - 1;
+            }
+
+            return j - dstOffset;
+        }
+
+        /**
+         * @return 字符的值，不合法时返回-1
+         */
+        private int value(CharSequence chars, byte[] bytes, int index) {
+            char c = charAt(chars, bytes, index);
+
+            return c < 128 ? values[c] : -1;
+        }
+
+        @Override
+        public String toString() {
+            return padding ? "BASE64" : "BASE64_URL";
+        }
+    }
+
+    private static final class Base62 extends ByteCodec {
+
+        private static final char[] ALPHABET = StringUtils.CHARS;
+        private static final byte[] VALUES = decodeTable(new String(ALPHABET));
+
+        private Base62() {
+            super(0, 0);
+        }
+
+        @Override
+        public int encodedLength(int length) {
+            // log(256) / log(62) < 1.34375
+            return (int) ((length * 1376L + 1023) / 1024);
+        }
+
+        @Override
+        public int maxDecodedLength(int length) {
+            return length;
+        }
+
+        @Override
+        int encode(byte[] src, int offset, int length, char[] chars, byte[] bytes, int dstOffset) {
+            int zeros = 0;
+            while (zeros < length && src[offset + zeros] == 0)
+                zeros++;
+
+            // 被除数，每次除以62后去掉开头的0
+            int[] number = new int[length - zeros];
+            for (int i = 0; i < number.length; i++)
+                number[i] = src[offset + zeros + i] & 0xFF;
+
+            char[] digits = new char[encodedLength(length)];
+            int count = 0;
+
+            for (int start = 0; start < number.length; ) {
+                int remainder = 0;
+                for (int i = start; i < number.length; i++) {
+                    int value = remainder << 8 | number[i];
+                    number[i] = value / 62;
+                    remainder = value % 62;
+                }
+                digits[count++] = ALPHABET[remainder];
+                while (start < number.length && number[start] == 0)
+                    start++;
+            }
+
+            int j = dstOffset;
+            for (int i = 0; i < zeros; i++)
+                j = put(chars, bytes, j, ALPHABET[0]);
+            for (int i = count - 1; i >= 0; i--)
+                j = put(chars, bytes, j, digits[i]);
+
+            return j - dstOffset;
+        }
+
+        private static int put(char[] chars, byte[] bytes, int index, char c) {
+            if (chars != null)
+                chars[index] = c;
+            else
+                bytes[index] = (byte) c;
+            return index + 1;
+        }
+
+        @Override
+        int decode(CharSequence chars, byte[] bytes, int offset, int length, byte[] dst, int dstOffset) {
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                char c = charAt(chars, bytes, i);
+                if (c >= 128 || VALUES[c] < 0)
+                    return -1;
+            }
+
+            if (dst == null)
+                return 0;
+
+            int zeros = 0;
+            while (zeros < length && charAt(chars, bytes, offset + zeros) == ALPHABET[0])
+                zeros++;
+
+            // 低位在前的256进制数
+            byte[] number = new byte[length - zeros];
+            int size = 0;
+
+            for (int i = offset + zeros; i < end; i++) {
+                int carry = VALUES[charAt(chars, bytes, i)];
+                for (int k = 0; k < size; k++) {
+                    carry += (number[k] & 0xFF) * 62;
+                    number[k] = (byte) carry;
+                    carry >>>= 8;
+                }
+                while (carry > 0) {
+                    number[size++] = (byte) carry;
+                    carry >>>= 8;
+                }
+            }
+
+            checkSpace(dst.length, dstOffset, zeros + size);
+
+            int j = dstOffset;
+            for (int i = 0; i < zeros; i++)
+                dst[j++] = 0;
+            for (int k = size - 1; k >= 0; k--)
+                dst[j++] = number[k];
+
+            return j - dstOffset;
+        }
+
+        @Override
+        public String toString() {
+            return "BASE62";
+        }
+    }
+
+    private final class EncodingOutputStream extends OutputStream {
+        private final Appendable out;
+        private final byte[] buf = new byte[blockBytes * STREAM_BLOCKS];
+        private final char[] chars = new char[blockChars * STREAM_BLOCKS];
+        private int count;
+        private boolean closed;
+
+        private EncodingOutputStream(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buf.length)
+                drain(false);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkRange(b.length, off, len);
+
+            while (len > 0) {
+                if (count == buf.length)
+                    drain(false);
+                int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * 输出完整的组，last为true时输出全部
+         */
+        private void drain(boolean last) throws IOException {
+            if (closed)
+                throw new IOException("Stream closed");
+
+            int n = last ? count : count - count % blockBytes;
+            if (n == 0)
+                return;
+
+            out.append(CharBuffer.wrap(chars, 0, encode(buf, 0, n, chars, null, 0)));
+            System.arraycopy(buf, n, buf, 0, count - n);
+            count -= n;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain(false);
+            if (out instanceof Flushable)
+                ((Flushable) out).flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+
+            drain(true);
+            closed = true;
+
+            if (out instanceof Flushable)
+                ((Flushable) out).flush();
+            if (out instanceof Closeable)
+                ((Closeable) out).close();
+        }
+    }
+
+    private final class DecodingInputStream extends InputStream {
+        private final Reader in;
+        private final char[] chars = new char[blockChars * STREAM_BLOCKS];
+        private final byte[] buf = new byte[blockBytes * STREAM_BLOCKS];
+        private final CharBuffer charView = CharBuffer.wrap(chars);
+
+        private int charCount;
+        private int bufPos;
+        private int bufCount;
+        private boolean eof;
+
+        private DecodingInputStream(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (bufPos == bufCount && !fill())
+                return -1;
+
+            return buf[bufPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkRange(b.length, off, len);
+            if (len == 0)
+                return 0;
+
+            if (bufPos == bufCount && !fill())
+                return -1;
+
+            int n = Math.min(len, bufCount - bufPos);
+            System.arraycopy(buf, bufPos, b, off, n);
+            bufPos += n;
+
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return bufCount - bufPos;
+        }
+
+        /**
+         * 读取并解码下一批字符，最后一批之前只解码完整的组并留下最后一组，而且不能有补位
+         */
+        private boolean fill() throws IOException {
+            bufPos = 0;
+            bufCount = 0;
+
+            while (bufCount == 0) {
+                while (!eof && charCount < chars.length) {
+                    int n = in.read(chars, charCount, chars.length - charCount);
+                    if (n < 0)
+                        eof = true;
+                    else
+                        charCount += n;
+                }
+
+                if (charCount == 0)
+                    return false;
+
+                // 未到结尾时至少留下最后一组，这样解码的部分后面一定还有输入，其中的补位才算错误
+                int n = eof ? charCount : (charCount - 1) / blockChars * blockChars;
+                if (!eof && chars[n - 1] == '=')
+                    throw new IOException("Invalid " + ByteCodec.this + " data : padding before end of input");
+
+                bufCount = decode(charView, null, 0, n, buf, 0);
+                if (bufCount < 0)
+                    throw new IOException("Invalid " + ByteCodec.this + " data");
+
+                System.arraycopy(chars, n, chars, 0, charCount - n);
+                charCount -= n;
+            }
+
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
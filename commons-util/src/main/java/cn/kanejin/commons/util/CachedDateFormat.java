@@ -0,0 +1,451 @@
+package cn.kanejin.commons.util;
+
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static cn.kanejin.commons.util.StringUtils.isEmpty;
+
+/**
+ * 带缓存的日期格式化和解析
+ *
+ * 每个线程保留上一次格式化的结果，同一秒内的连续格式化直接复用，
+ * 如果只有毫秒不同，则只重写结果中的毫秒部分；
+ * 解析时每个线程保留一个有界的LRU缓存，把最近解析过的字符串映射到毫秒数。
+ * 命中次数也是每个线程各自计数，读取命中率时才汇总，格式化和解析时线程之间没有竞争。
+ *
+ * 本类的实例是线程安全的，可以作为常量共享。
+ *
+ * @author Kane Jin
+ */
+public class CachedDateFormat {
+
+    /**
+     * 默认的解析缓存大小
+     */
+    public static final int DEFAULT_PARSE_CACHE_SIZE = 64;
+
+    private final String pattern;
+    private final int parseCacheSize;
+
+    /**
+     * 毫秒字段在格式中的宽度：0表示格式中没有毫秒，-1表示毫秒无法单独重写
+     */
+    private final int millisWidth;
+
+    /**
+     * 统计的计数器在数组中的下标
+     */
+    private static final int FORMAT_HITS = 0;
+    private static final int FORMAT_MILLIS_HITS = 1;
+    private static final int FORMAT_MISSES = 2;
+    private static final int PARSE_HITS = 3;
+    private static final int PARSE_MISSES = 4;
+    private static final int COUNTERS = 5;
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            State s = new State();
+            register(s.counters);
+            return s;
+        }
+    };
+
+    /**
+     * 各个线程的计数器，线程结束后它的计数累加到retiredCounters中。
+     * 只在线程第一次使用和读取统计时加锁，格式化和解析时不加锁
+     */
+    private final List<CounterRef> threadCounters = new ArrayList<CounterRef>();
+    private final long[] retiredCounters = new long[COUNTERS];
+
+    /**
+     * 上次清零时的计数，统计结果都减去这个值
+     */
+    private final long[] resetCounters = new long[COUNTERS];
+
+    /**
+     * @param pattern 日期格式
+     */
+    public CachedDateFormat(String pattern) {
+        this(pattern, DEFAULT_PARSE_CACHE_SIZE);
+    }
+
+    /**
+     * @param pattern 日期格式
+     * @param parseCacheSize 每个线程缓存的解析结果的最大个数
+     */
+    public CachedDateFormat(String pattern, int parseCacheSize) {
+        if (parseCacheSize < 0)
+            throw new IllegalArgumentException("Parse cache size must not be negative : " + parseCacheSize);
+
+        // 提前校验格式，非法格式在这里就抛出IllegalArgumentException
+        new SimpleDateFormat(pattern);
+
+        this.pattern = pattern;
+        this.parseCacheSize = parseCacheSize;
+        this.millisWidth = millisWidth(pattern);
+    }
+
+    /**
+     * @return 日期格式
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * 格式化日期
+     *
+     * @param date 日期
+     * @return 格式化后的日期字符串，如果日期为null，返回空("")
+     */
+    public String format(Date date) {
+        if (date == null)
+            return "";
+
+        return format(date.getTime());
+    }
+
+    /**
+     * 格式化日期
+     *
+     * @param time 毫秒数(ms) since 1970/01/01 00:00:00 GMT.
+     * @return 格式化后的日期字符串
+     */
+    public String format(long time) {
+        int millis = (int) (time % 1000);
+        if (millis < 0)
+            millis += 1000;
+        long second = time - millis;
+
+        State s = state.get();
+
+        if (s.lastText != null && s.lastSecond == second) {
+            if (s.lastMillis == millis || millisWidth == 0) {
+                s.count(FORMAT_HITS);
+                return s.lastText;
+            }
+
+            if (millisWidth > 0) {
+                int v = millis;
+                for (int i = s.millisEnd - 1; i >= s.millisBegin; i--) {
+                    s.chars[i] = (char) ('0' + v % 10);
+                    v /= 10;
+                }
+                s.lastMillis = millis;
+                s.lastText = new String(s.chars, 0, s.length);
+                s.count(FORMAT_MILLIS_HITS);
+                return s.lastText;
+            }
+        }
+
+        s.count(FORMAT_MISSES);
+
+        StringBuffer buf = new StringBuffer(pattern.length() + 8);
+        FieldPosition pos = new FieldPosition(DateFormat.MILLISECOND_FIELD);
+        s.date.setTime(time);
+        s.format().format(s.date, buf, pos);
+
+        s.lastSecond = second;
+        s.lastMillis = millis;
+        s.lastText = buf.toString();
+
+        if (millisWidth > 0 && pos.getEndIndex() - pos.getBeginIndex() == millisWidth) {
+            s.length = buf.length();
+            if (s.chars == null || s.chars.length < s.length)
+                s.chars = new char[s.length];
+            buf.getChars(0, s.length, s.chars, 0);
+            s.millisBegin = pos.getBeginIndex();
+            s.millisEnd = pos.getEndIndex();
+        } else if (millisWidth > 0) {
+            // 毫秒的位置无法确定时，下次只能完整格式化
+            s.lastSecond = Long.MIN_VALUE;
+        }
+
+        return s.lastText;
+    }
+
+    /**
+     * 解析日期字符串
+     *
+     * @param dateString 日期字符串
+     * @return 解析后的日期，如果字符串为空或无法解析，返回null
+     */
+    public Date parse(String dateString) {
+        Long time = parseTime(dateString);
+
+        return time == null ? null : new Date(time);
+    }
+
+    /**
+     * 解析日期字符串
+     *
+     * @param dateString 日期字符串
+     * @return 解析后的毫秒数(ms)，如果字符串为空或无法解析，返回null
+     */
+    public Long parseTime(String dateString) {
+        if (isEmpty(dateString))
+            return null;
+
+        State s = state.get();
+
+        if (dateString.equals(s.lastParsed)) {
+            s.count(PARSE_HITS);
+            return s.lastParsedTime;
+        }
+
+        Long time = s.parseCache == null ? null : s.parseCache.get(dateString);
+
+        if (time != null) {
+            s.count(PARSE_HITS);
+        } else {
+            s.count(PARSE_MISSES);
+
+            try {
+                time = s.format().parse(dateString).getTime();
+            } catch (ParseException e) {
+                return null;
+            }
+
+            if (parseCacheSize > 0) {
+                if (s.parseCache == null)
+                    s.parseCache = new LruCache(parseCacheSize);
+                s.parseCache.put(dateString, time);
+            }
+        }
+
+        s.lastParsed = dateString;
+        s.lastParsedTime = time;
+
+        return time;
+    }
+
+    /**
+     * @return 格式化时同一秒内完全命中缓存的次数
+     */
+    public long getFormatHits() {
+        return counter(FORMAT_HITS);
+    }
+
+    /**
+     * @return 格式化时同一秒内只重写毫秒的次数
+     */
+    public long getFormatMillisHits() {
+        return counter(FORMAT_MILLIS_HITS);
+    }
+
+    /**
+     * @return 格式化时未命中缓存的次数
+     */
+    public long getFormatMisses() {
+        return counter(FORMAT_MISSES);
+    }
+
+    /**
+     * @return 格式化的缓存命中率（包括只重写毫秒的情况），没有格式化过时返回0
+     */
+    public double getFormatHitRate() {
+        long[] counters = counters();
+
+        return hitRate(counters[FORMAT_HITS] + counters[FORMAT_MILLIS_HITS], counters[FORMAT_MISSES]);
+    }
+
+    /**
+     * @return 解析时命中缓存的次数
+     */
+    public long getParseHits() {
+        return counter(PARSE_HITS);
+    }
+
+    /**
+     * @return 解析时未命中缓存的次数
+     */
+    public long getParseMisses() {
+        return counter(PARSE_MISSES);
+    }
+
+    /**
+     * @return 解析的缓存命中率，没有解析过时返回0
+     */
+    public double getParseHitRate() {
+        long[] counters = counters();
+
+        return hitRate(counters[PARSE_HITS], counters[PARSE_MISSES]);
+    }
+
+    /**
+     * 清零命中次数的统计
+     */
+    public void resetStatistics() {
+        synchronized (threadCounters) {
+            long[] total = totalCounters();
+            System.arraycopy(total, 0, resetCounters, 0, COUNTERS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CachedDateFormat[" + pattern
+                + ", formatHitRate=" + getFormatHitRate()
+                + ", parseHitRate=" + getParseHitRate() + "]";
+    }
+
+    private void register(AtomicLongArray counters) {
+        synchronized (threadCounters) {
+            // 顺便清理已经结束的线程，避免线程不断更替时计数器越积越多
+            totalCounters();
+            threadCounters.add(new CounterRef(Thread.currentThread(), counters));
+        }
+    }
+
+    private long counter(int index) {
+        return counters()[index];
+    }
+
+    /**
+     * @return 上次清零后的计数
+     */
+    private long[] counters() {
+        synchronized (threadCounters) {
+            long[] total = totalCounters();
+
+            for (int i = 0; i < COUNTERS; i++)
+                total[i] -= resetCounters[i];
+
+            return total;
+        }
+    }
+
+    /**
+     * 汇总所有线程的计数，调用时要持有threadCounters的锁
+     */
+    private long[] totalCounters() {
+        for (Iterator<CounterRef> it = threadCounters.iterator(); it.hasNext(); ) {
+            CounterRef ref = it.next();
+
+            if (ref.get() == null) {
+                for (int i = 0; i < COUNTERS; i++)
+                    retiredCounters[i] += ref.counters.get(i);
+                it.remove();
+            }
+        }
+
+        long[] total = retiredCounters.clone();
+
+        for (CounterRef ref : threadCounters) {
+            for (int i = 0; i < COUNTERS; i++)
+                total[i] += ref.counters.get(i);
+        }
+
+        return total;
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * 计算格式中毫秒字段的宽度
+     *
+     * 只有格式中恰好有一个不少于3位的毫秒字段('SSS')时，毫秒的输出宽度才是固定的，
+     * 才能只重写毫秒部分。
+     */
+    private static int millisWidth(String pattern) {
+        int fields = 0;
+        int width = 0;
+        boolean quoted = false;
+
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == 'S' && !quoted) {
+                int j = i;
+                while (j < pattern.length() && pattern.charAt(j) == 'S')
+                    j++;
+                fields++;
+                width = j - i;
+                i = j - 1;
+            }
+        }
+
+        if (fields == 0)
+            return 0;
+
+        return fields == 1 && width >= 3 ? width : -1;
+    }
+
+    private final class State {
+        private SimpleDateFormat format;
+        private final Date date = new Date();
+
+        private long lastSecond = Long.MIN_VALUE;
+        private int lastMillis;
+        private String lastText;
+
+        private char[] chars;
+        private int length;
+        private int millisBegin;
+        private int millisEnd;
+
+        private String lastParsed;
+        private Long lastParsedTime;
+        private LruCache parseCache;
+
+        /**
+         * 只有所属的线程会写入，用lazySet代替原子的自增，避免内存屏障
+         */
+        private final AtomicLongArray counters = new AtomicLongArray(COUNTERS);
+
+        private void count(int index) {
+            counters.lazySet(index, counters.get(index) + 1);
+        }
+
+        private SimpleDateFormat format() {
+            if (format == null)
+                format = new SimpleDateFormat(pattern);
+            return format;
+        }
+    }
+
+    /**
+     * 线程的计数器，线程被回收后引用被清除
+     */
+    private static final class CounterRef extends WeakReference<Thread> {
+        private final AtomicLongArray counters;
+
+        private CounterRef(Thread thread, AtomicLongArray counters) {
+            super(thread);
+            this.counters = counters;
+        }
+    }
+
+    private static final class LruCache extends LinkedHashMap<String, Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private LruCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
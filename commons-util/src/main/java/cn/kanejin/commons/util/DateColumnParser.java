@@ -0,0 +1,671 @@
+package cn.kanejin.commons.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 批量解析字节数据中的日期列
+ *
+ * 直接从字节中按格式解析日期，结果为毫秒数(ms)数组，无法解析的行记录在位图中，
+ * 不会为每个字段创建String、SimpleDateFormat和Date。
+ * 数据量较大时，按行切分成多块并行解析。
+ *
+ * 支持的格式字母只有yyyy、MM、dd、HH、mm、ss、SSS，字段必须是固定宽度的数字，
+ * 其它非字母字符按原样匹配，例如"yyyy-MM-dd HH:mm:ss"。
+ * 与SimpleDateFormat相同，单引号中的文本按原样匹配，两个单引号表示一个单引号，
+ * 例如"yyyy-MM-dd'T'HH:mm:ss'Z'"、"HH 'o''clock'"。
+ * 解析是严格的，超出范围的字段（例如13月、2月30日）视为无法解析。
+ *
+ * 按分隔符解析时，行以'\n'或"\r\n"结尾，不支持带引号的字段。
+ *
+ * 本类的实例是线程安全的。
+ *
+ * @author Kane Jin
+ */
+public class DateColumnParser {
+
+    private static final int YEAR = 0;
+    private static final int MONTH = 1;
+    private static final int DAY = 2;
+    private static final int HOUR = 3;
+    private static final int MINUTE = 4;
+    private static final int SECOND = 5;
+    private static final int MILLIS = 6;
+
+    private static final String FIELD_LETTERS = "yMdHmsS";
+    private static final int[] FIELD_WIDTHS = {4, 2, 2, 2, 2, 2, 3};
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    /**
+     * 时区偏移量的缓存粒度。现行时区的切换都发生在15分钟的整数倍上，
+     * 但早年从地方平时(LMT)切换的时刻不一定，这样的15分钟不缓存，逐个计算
+     */
+    private static final long OFFSET_BLOCK = 15 * 60 * 1000L;
+    private static final int OFFSET_CACHE_SIZE = 256;
+
+    /**
+     * 小于这个大小的数据不并行解析
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    /**
+     * 解析文件时每次映射的最大字节数
+     */
+    private static final int MAX_MAPPED_SIZE = 1 << 30;
+
+    /**
+     * 每块结果的初始行数，不按字节数预估，行比格式长得多时会分配过多的内存
+     */
+    private static final int INITIAL_CHUNK_ROWS = 1024;
+
+    private final String pattern;
+    private final TimeZone timeZone;
+    private final int parallelism;
+
+    private final int length;
+    private final int[] fieldOffsets = new int[7];
+    private final byte[] literals;
+
+    /**
+     * 使用默认时区，并行度为CPU核数
+     *
+     * @param pattern 日期格式
+     */
+    public DateColumnParser(String pattern) {
+        this(pattern, TimeZone.getDefault());
+    }
+
+    /**
+     * 并行度为CPU核数
+     *
+     * @param pattern 日期格式
+     * @param timeZone 时区
+     */
+    public DateColumnParser(String pattern, TimeZone timeZone) {
+        this(pattern, timeZone, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param pattern 日期格式
+     * @param timeZone 时区
+     * @param parallelism 并行解析的线程数，为1时不并行
+     */
+    public DateColumnParser(String pattern, TimeZone timeZone, int parallelism) {
+        if (StringUtils.isEmpty(pattern))
+            throw new IllegalArgumentException("Pattern must not be empty");
+        if (timeZone == null)
+            throw new IllegalArgumentException("Time zone must not be null");
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Parallelism must be greater than 0 : " + parallelism);
+
+        this.pattern = pattern;
+        this.timeZone = (TimeZone) timeZone.clone();
+        this.parallelism = parallelism;
+
+        // 文本中每个字节要匹配的字符，0表示数字
+        byte[] bytes = new byte[pattern.length()];
+        int size = 0;
+        boolean quoted = false;
+        Arrays.fill(fieldOffsets, -1);
+
+        for (int i = 0; i < pattern.length(); ) {
+            char c = pattern.charAt(i);
+
+            if (c == '\'') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                    // 引号内外的''都表示一个单引号
+                    bytes[size++] = '\'';
+                    i += 2;
+                } else {
+                    quoted = !quoted;
+                    i++;
+                }
+                continue;
+            }
+
+            if (quoted || !(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) {
+                if (c > 0x7F)
+                    throw new IllegalArgumentException("Non-ASCII character in pattern : " + pattern);
+                bytes[size++] = (byte) c;
+                i++;
+                continue;
+            }
+
+            int field = FIELD_LETTERS.indexOf(c);
+            int j = i;
+            while (j < pattern.length() && pattern.charAt(j) == c)
+                j++;
+
+            if (field < 0 || j - i != FIELD_WIDTHS[field] || fieldOffsets[field] >= 0)
+                throw new IllegalArgumentException("Unsupported pattern : " + pattern);
+
+            fieldOffsets[field] = size;
+            size += j - i;
+            i = j;
+        }
+
+        if (quoted)
+            throw new IllegalArgumentException("Unterminated quote in pattern : " + pattern);
+
+        this.length = size;
+        this.literals = Arrays.copyOf(bytes, size);
+    }
+
+    /**
+     * @return 日期格式
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * 按偏移量解析日期字段
+     *
+     * @param buffer 数据
+     * @param offsets 每个字段在数据中的绝对位置
+     * @param lengths 每个字段的长度
+     * @return 解析结果，第i行对应第i个字段
+     */
+    public Result parse(final ByteBuffer buffer, final int[] offsets, final int[] lengths) {
+        if (offsets.length != lengths.length)
+            throw new IllegalArgumentException("Offsets and lengths must have the same length");
+
+        final int rows = offsets.length;
+        final long[] times = new long[rows];
+        final long[] invalid = new long[(rows + 63) >>> 6];
+
+        int chunks = rows * (long) length < PARALLEL_THRESHOLD ? 1 : parallelism;
+        List<Callable<Chunk>> tasks = new ArrayList<Callable<Chunk>>(chunks);
+
+        for (int i = 0; i < chunks; i++) {
+            // 按64行对齐，各个任务不会写到位图的同一个long
+            final int from = (int) ((long) rows * i / chunks) & ~63;
+            final int to = i == chunks - 1 ? rows : (int) ((long) rows * (i + 1) / chunks) & ~63;
+
+            tasks.add(new Callable<Chunk>() {
+                public Chunk call() {
+                    Worker worker = new Worker(buffer.duplicate());
+                    for (int row = from; row < to; row++) {
+                        long time = worker.parse(offsets[row], offsets[row] + lengths[row]);
+                        if (time == Long.MIN_VALUE)
+                            invalid[row >>> 6] |= 1L << row;
+                        else
+                            times[row] = time;
+                    }
+                    return null;
+                }
+            });
+        }
+
+        execute(tasks);
+
+        return new Result(times, invalid, rows);
+    }
+
+    /**
+     * 按分隔符解析日期列
+     *
+     * 解析从buffer的position到limit之间的数据，不改变buffer的position。
+     * 如果有标题行，可以先把position移到标题行之后。
+     *
+     * @param buffer 数据
+     * @param delimiter 字段分隔符
+     * @param column 日期所在的列，从0开始
+     * @return 解析结果，第i个元素对应第i行
+     */
+    public Result parse(ByteBuffer buffer, byte delimiter, int column) {
+        if (column < 0)
+            throw new IllegalArgumentException("Column must not be negative : " + column);
+
+        ResultBuilder builder = new ResultBuilder();
+        parse(buffer, delimiter, column, builder);
+
+        return builder.build();
+    }
+
+    /**
+     * 按分隔符解析文件中的日期列
+     *
+     * 文件以只读方式映射到内存中解析
+     *
+     * @param file 文件
+     * @param delimiter 字段分隔符
+     * @param column 日期所在的列，从0开始
+     * @return 解析结果，第i个元素对应第i行
+     * @throws IOException 读取文件出错
+     */
+    public Result parse(File file, byte delimiter, int column) throws IOException {
+        if (column < 0)
+            throw new IllegalArgumentException("Column must not be negative : " + column);
+
+        ResultBuilder builder = new ResultBuilder();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+
+            for (long position = 0; position < size; ) {
+                int mapped = (int) Math.min(size - position, MAX_MAPPED_SIZE);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, mapped);
+
+                if (position + mapped < size) {
+                    // 只解析完整的行，剩下的留到下一次映射
+                    int end = mapped;
+                    while (end > 0 && buffer.get(end - 1) != '\n')
+                        end--;
+                    if (end == 0)
+                        throw new IOException("Line too long at position " + position + " : " + file);
+                    mapped = end;
+                    buffer.limit(mapped);
+                }
+
+                parse(buffer, delimiter, column, builder);
+                position += mapped;
+            }
+        } finally {
+            raf.close();
+        }
+
+        return builder.build();
+    }
+
+    private void parse(final ByteBuffer buffer, final byte delimiter, final int column, ResultBuilder builder) {
+        int start = buffer.position();
+        int end = buffer.limit();
+
+        int chunks = end - start < PARALLEL_THRESHOLD ? 1 : parallelism;
+        List<Callable<Chunk>> tasks = new ArrayList<Callable<Chunk>>(chunks);
+
+        for (int i = 0, from = start; i < chunks && from < end; i++) {
+            int to = i == chunks - 1 ? end : nextLine(buffer, start + (int) ((long) (end - start) * (i + 1) / chunks), end);
+            if (to <= from)
+                continue;
+
+            final int chunkFrom = from;
+            final int chunkTo = to;
+            tasks.add(new Callable<Chunk>() {
+                public Chunk call() {
+                    return new Worker(buffer.duplicate()).parseLines(chunkFrom, chunkTo, delimiter, column);
+                }
+            });
+
+            from = to;
+        }
+
+        for (Chunk chunk : execute(tasks))
+            builder.append(chunk);
+    }
+
+    private static int nextLine(ByteBuffer buffer, int from, int end) {
+        while (from < end && buffer.get(from++) != '\n')
+            ;
+        return from;
+    }
+
+    private List<Chunk> execute(List<Callable<Chunk>> tasks) {
+        List<Chunk> chunks = new ArrayList<Chunk>(tasks.size());
+
+        if (tasks.size() == 1) {
+            try {
+                chunks.add(tasks.get(0).call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return chunks;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for (Future<Chunk> future : executor.invokeAll(tasks))
+                chunks.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing dates", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return chunks;
+    }
+
+    /**
+     * 计算日期距1970/01/01的天数，与GregorianCalendar一致，1582年10月15日之前按儒略历计算
+     *
+     * 年份不小于1
+     */
+    private static long epochDay(int year, int month, int day) {
+        boolean julian = year < 1582 || year == 1582 && (month < 10 || month == 10 && day < 15);
+
+        // 儒略日数(JDN)
+        int a = (14 - month) / 12;
+        long y = year + 4800L - a;
+        int m = month + 12 * a - 3;
+        long jdn = day + (153 * m + 2) / 5 + 365 * y + y / 4
+                + (julian ? -32083 : -y / 100 + y / 400 - 32045);
+
+        // 1970/01/01的儒略日数是2440588
+        return jdn - 2440588;
+    }
+
+    /**
+     * 与GregorianCalendar一致，1582年10月15日之前使用儒略历
+     */
+    private static boolean isValidDate(int year, int month, int day) {
+        if (day < 1 || day > daysInMonth(year, month))
+            return false;
+
+        return year != 1582 || month != 10 || day < 5 || day > 14;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                if (year < 1582)
+                    return year % 4 == 0 ? 29 : 28;
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * 每个解析线程独占的状态
+     */
+    private final class Worker {
+        private final ByteBuffer buffer;
+        private final Calendar calendar;
+
+        private final long[] offsetKeys = new long[OFFSET_CACHE_SIZE];
+        private final long[] offsetValues = new long[OFFSET_CACHE_SIZE];
+
+        private Worker(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.calendar = new GregorianCalendar((TimeZone) timeZone.clone());
+            Arrays.fill(offsetKeys, Long.MIN_VALUE);
+        }
+
+        private Chunk parseLines(int from, int to, byte delimiter, int column) {
+            Chunk chunk = new Chunk(INITIAL_CHUNK_ROWS);
+
+            for (int pos = from; pos < to; ) {
+                int fieldStart = pos;
+                int fieldEnd = -1;
+                int col = 0;
+
+                while (pos < to) {
+                    byte b = buffer.get(pos);
+                    if (b == '\n')
+                        break;
+                    if (b == delimiter) {
+                        if (col == column)
+                            fieldEnd = pos;
+                        col++;
+                        if (col == column)
+                            fieldStart = pos + 1;
+                    }
+                    pos++;
+                }
+
+                int lineEnd = pos;
+                if (lineEnd > fieldStart && buffer.get(lineEnd - 1) == '\r')
+                    lineEnd--;
+                if (col == column)
+                    fieldEnd = lineEnd;
+
+                chunk.add(fieldEnd < 0 ? Long.MIN_VALUE : parse(fieldStart, fieldEnd));
+
+                // 跳过'\n'
+                pos++;
+            }
+
+            return chunk;
+        }
+
+        /**
+         * @return 毫秒数，无法解析时返回Long.MIN_VALUE
+         */
+        private long parse(int from, int to) {
+            if (to - from != length)
+                return Long.MIN_VALUE;
+
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(from + i);
+                if (literals[i] != 0) {
+                    if (b != literals[i])
+                        return Long.MIN_VALUE;
+                } else if (b < '0' || b > '9') {
+                    return Long.MIN_VALUE;
+                }
+            }
+
+            int year = field(from, YEAR, 1970);
+            int month = field(from, MONTH, 1);
+            int day = field(from, DAY, 1);
+            int hour = field(from, HOUR, 0);
+            int minute = field(from, MINUTE, 0);
+            int second = field(from, SECOND, 0);
+            int millis = field(from, MILLIS, 0);
+
+            if (year < 1 || month < 1 || month > 12 || !isValidDate(year, month, day)
+                    || hour > 23 || minute > 59 || second > 59)
+                return Long.MIN_VALUE;
+
+            // 把本地时间看作UTC时的毫秒数，按15分钟取整作为缓存的键
+            long blockStart = epochDay(year, month, day) * MILLIS_PER_DAY
+                    + hour * 3600000L + (minute / 15) * OFFSET_BLOCK;
+            long key = blockStart / OFFSET_BLOCK;
+            int index = (int) (key & (OFFSET_CACHE_SIZE - 1));
+            long local = blockStart + (minute % 15) * 60000L + second * 1000L + millis;
+
+            if (offsetKeys[index] == key)
+                return local - offsetValues[index];
+
+            int blockMinute = minute / 15 * 15;
+            long offset = blockStart - toMillis(year, month, day, hour, blockMinute, 0, 0);
+            long lastOffset = blockStart + OFFSET_BLOCK - 1
+                    - toMillis(year, month, day, hour, blockMinute + 14, 59, 999);
+
+            if (offset != lastOffset) {
+                // 这15分钟内有时区的切换，不能使用同一个偏移量
+                return toMillis(year, month, day, hour, minute, second, millis);
+            }
+
+            offsetKeys[index] = key;
+            offsetValues[index] = offset;
+
+            return local - offset;
+        }
+
+        private int field(int from, int field, int defaultValue) {
+            int offset = fieldOffsets[field];
+            if (offset < 0)
+                return defaultValue;
+
+            int value = 0;
+            for (int i = 0; i < FIELD_WIDTHS[field]; i++)
+                value = value * 10 + buffer.get(from + offset + i) - '0';
+
+            return value;
+        }
+
+        /**
+         * 由Calendar计算毫秒数，所以夏令时和历法切换的处理与SimpleDateFormat一致
+         */
+        private long toMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+            calendar.clear();
+            calendar.set(year, month - 1, day, hour, minute, second);
+            calendar.set(Calendar.MILLISECOND, millis);
+
+            return calendar.getTimeInMillis();
+        }
+    }
+
+    /**
+     * 一块数据的解析结果
+     */
+    private static final class Chunk {
+        private long[] times;
+        private long[] invalid;
+        private int size;
+
+        private Chunk(int capacity) {
+            times = new long[capacity];
+            invalid = new long[(capacity + 63) >>> 6];
+        }
+
+        private void add(long time) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size + (size >> 1));
+                invalid = Arrays.copyOf(invalid, (times.length + 63) >>> 6);
+            }
+
+            if (time == Long.MIN_VALUE)
+                invalid[size >>> 6] |= 1L << size;
+            else
+                times[size] = time;
+            size++;
+        }
+    }
+
+    private static final class ResultBuilder {
+        private final List<Chunk> chunks = new ArrayList<Chunk>();
+        private long size;
+
+        private void append(Chunk chunk) {
+            chunks.add(chunk);
+            size += chunk.size;
+        }
+
+        private Result build() {
+            if (size > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Too many rows : " + size);
+
+            int rows = (int) size;
+
+            if (chunks.size() == 1) {
+                // 只有一块时位图不用移位，截掉多余的容量即可
+                Chunk chunk = chunks.get(0);
+                return new Result(trim(chunk.times, rows), trim(chunk.invalid, (rows + 63) >>> 6), rows);
+            }
+
+            long[] times = new long[rows];
+            long[] invalid = new long[(rows + 63) >>> 6];
+
+            int offset = 0;
+            for (Chunk chunk : chunks) {
+                System.arraycopy(chunk.times, 0, times, offset, chunk.size);
+
+                for (int w = 0; w < chunk.invalid.length; w++) {
+                    long bits = chunk.invalid[w];
+                    while (bits != 0) {
+                        int row = offset + (w << 6) + Long.numberOfTrailingZeros(bits);
+                        invalid[row >>> 6] |= 1L << row;
+                        bits &= bits - 1;
+                    }
+                }
+
+                offset += chunk.size;
+            }
+
+            return new Result(times, invalid, rows);
+        }
+
+        private static long[] trim(long[] array, int length) {
+            return array.length == length ? array : Arrays.copyOf(array, length);
+        }
+    }
+
+    /**
+     * 日期列的解析结果
+     */
+    public static class Result {
+        private final long[] times;
+        private final long[] invalid;
+        private final int size;
+
+        private Result(long[] times, long[] invalid, int size) {
+            this.times = times;
+            this.invalid = invalid;
+            this.size = size;
+        }
+
+        /**
+         * @return 行数
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 获取解析后的毫秒数
+         *
+         * @return 每行的毫秒数(ms)，无法解析的行为0
+         */
+        public long[] getTimes() {
+            return times;
+        }
+
+        /**
+         * 获取无法解析的行的位图
+         *
+         * 第i行无法解析时，第(i / 64)个long的第(i % 64)位为1
+         *
+         * @return 位图
+         */
+        public long[] getInvalidBitmap() {
+            return invalid;
+        }
+
+        /**
+         * 判断指定行是否解析成功
+         *
+         * @param row 行号，从0开始
+         * @return 如果解析成功，返回true，否则返回false
+         */
+        public boolean isValid(int row) {
+            if (row < 0 || row >= size)
+                throw new IndexOutOfBoundsException("Row : " + row + ", Size : " + size);
+
+            return (invalid[row >>> 6] & (1L << row)) == 0;
+        }
+
+        /**
+         * @return 无法解析的行数
+         */
+        public int getInvalidCount() {
+            int count = 0;
+            for (long bits : invalid)
+                count += Long.bitCount(bits);
+
+            return count;
+        }
+    }
+}
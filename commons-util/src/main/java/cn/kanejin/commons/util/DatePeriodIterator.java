@@ -0,0 +1,336 @@
+package cn.kanejin.commons.util;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static java.util.Calendar.*;
+
+/**
+ * 按天、星期、月、季度或年遍历两个日期之间的时间段
+ *
+ * 时间段是按需逐个计算的，不会创建Date数组或集合，每个时间段的开始和结束都是毫秒数，
+ * 星期从星期一开始。时间段按日历字段计算，夏令时切换的那天是23或25小时，
+ * 相邻的时间段之间没有空隙也没有重叠，因时区调整而不存在的日期会被跳过。
+ *
+ * 时间段的开始是本地日期为开始日期的最早时刻，结束是下一个时间段开始的前1毫秒。
+ * 一般情况下与DateUtils中startAndEndOfXxx方法的结果一致，但在零点有跳变的日子不同：
+ * 午夜回拨时钟时（例如America/Havana）零点出现两次，开始取第一次；零点因夏令时不存在时，
+ * 开始是时钟跳过零点的时刻。这两种情况下DateUtils.beginOfDate取的时刻更晚，
+ * 它与前一天的endOfDate之间的一段时间不属于任何一天。
+ *
+ * 可以用{@link #trySplit()}把剩下的时间段平分成两半，分给多个线程并行处理。
+ *
+ * 用法：
+ * <pre>
+ * DatePeriodIterator it = DateUtils.iteratePeriods(start, end, DatePeriodIterator.Unit.MONTH);
+ * while (it.next()) {
+ *     long begin = it.getStart();
+ *     long end = it.getEnd();
+ * }
+ * </pre>
+ *
+ * 本类不是线程安全的，拆分出来的各个部分可以在不同的线程中使用。
+ *
+ * @author Kane Jin
+ */
+public class DatePeriodIterator {
+
+    /**
+     * 时间段的单位
+     */
+    public enum Unit {
+        DAY, WEEK, MONTH, QUARTER, YEAR
+    }
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private final Unit unit;
+    private final Calendar calendar;
+    private final TimeZone timeZone;
+
+    /**
+     * 用于计算两个日期之间的天数，与calendar使用同样的历法
+     */
+    private final Calendar utc;
+
+    /**
+     * 第0个时间段开始的日期
+     */
+    private final int baseYear;
+    private final int baseMonth;
+    private final int baseDay;
+
+    private int index;
+    private int fence;
+
+    private long start;
+    private long end;
+
+    private int nextIndex = -1;
+    private long nextStart;
+
+    /**
+     * 使用默认时区
+     *
+     * @param unit 时间段的单位
+     * @param start 开始日期，第一个时间段是包含开始日期的时间段
+     * @param end 结束日期，最后一个时间段是包含结束日期的时间段
+     */
+    public DatePeriodIterator(Unit unit, Date start, Date end) {
+        this(unit, start.getTime(), end.getTime(), TimeZone.getDefault());
+    }
+
+    /**
+     * @param unit 时间段的单位
+     * @param start 开始时间的毫秒数，第一个时间段是包含开始时间的时间段
+     * @param end 结束时间的毫秒数，最后一个时间段是包含结束时间的时间段
+     * @param timeZone 时区
+     */
+    public DatePeriodIterator(Unit unit, long start, long end, TimeZone timeZone) {
+        if (unit == null)
+            throw new IllegalArgumentException("Unit must not be null");
+
+        this.unit = unit;
+        this.calendar = new GregorianCalendar(timeZone);
+        this.timeZone = calendar.getTimeZone();
+        this.utc = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+
+        calendar.setTimeInMillis(start);
+        align();
+        baseYear = calendar.get(YEAR);
+        baseMonth = calendar.get(MONTH);
+        baseDay = calendar.get(DATE);
+
+        calendar.setTimeInMillis(end);
+        align();
+        long periods = periodsBetween(calendar.get(YEAR), calendar.get(MONTH), calendar.get(DATE)) + 1;
+
+        if (periods > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many periods between " + start + " and " + end);
+
+        this.index = 0;
+        this.fence = end < start ? 0 : (int) periods;
+    }
+
+    private DatePeriodIterator(DatePeriodIterator other, int fence) {
+        this.unit = other.unit;
+        this.calendar = (Calendar) other.calendar.clone();
+        this.timeZone = calendar.getTimeZone();
+        this.utc = (Calendar) other.utc.clone();
+        this.baseYear = other.baseYear;
+        this.baseMonth = other.baseMonth;
+        this.baseDay = other.baseDay;
+        this.index = other.index;
+        this.fence = fence;
+        this.nextIndex = other.nextIndex;
+        this.nextStart = other.nextStart;
+    }
+
+    /**
+     * @return 时间段的单位
+     */
+    public Unit getUnit() {
+        return unit;
+    }
+
+    /**
+     * 移到下一个时间段
+     *
+     * @return 如果还有时间段，返回true，否则返回false
+     */
+    public boolean next() {
+        while (index < fence) {
+            start = index == nextIndex ? nextStart : periodStart(index);
+            index++;
+            nextStart = periodStart(index);
+            nextIndex = index;
+
+            if (nextStart > start) {
+                end = nextStart - 1;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return 当前时间段开始的毫秒数
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return 当前时间段结束的毫秒数（包含）
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return 当前时间段的开始
+     */
+    public Date getStartDate() {
+        return new Date(start);
+    }
+
+    /**
+     * @return 当前时间段的结束
+     */
+    public Date getEndDate() {
+        return new Date(end);
+    }
+
+    /**
+     * 剩下的时间段的个数
+     *
+     * 因时区调整而不存在的日期也计算在内，所以实际的个数可能更少
+     *
+     * @return 剩下的时间段的个数
+     */
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    /**
+     * 把剩下的时间段平分成两半
+     *
+     * 返回前一半，当前的迭代器只剩下后一半，两者互不影响
+     *
+     * @return 前一半时间段的迭代器，如果剩下的时间段少于2个，返回null
+     */
+    public DatePeriodIterator trySplit() {
+        int mid = index + (fence - index) / 2;
+        if (mid <= index)
+            return null;
+
+        DatePeriodIterator prefix = new DatePeriodIterator(this, mid);
+        index = mid;
+
+        return prefix;
+    }
+
+    /**
+     * 把日历对齐到所在时间段的开始日期
+     */
+    private void align() {
+        switch (unit) {
+            case WEEK:
+                int dayOfWeek = calendar.get(DAY_OF_WEEK) - 1;
+                if (dayOfWeek == 0)
+                    dayOfWeek = 7;
+                calendar.add(DATE, 1 - dayOfWeek);
+                break;
+            case MONTH:
+                calendar.set(DATE, 1);
+                break;
+            case QUARTER:
+                calendar.set(MONTH, calendar.get(MONTH) / 3 * 3);
+                calendar.set(DATE, 1);
+                break;
+            case YEAR:
+                calendar.set(MONTH, JANUARY);
+                calendar.set(DATE, 1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 计算从第0个时间段到指定日期所在时间段之间的时间段个数
+     */
+    private long periodsBetween(int year, int month, int day) {
+        switch (unit) {
+            case DAY:
+                return epochDay(year, month, day) - epochDay(baseYear, baseMonth, baseDay);
+            case WEEK:
+                return (epochDay(year, month, day) - epochDay(baseYear, baseMonth, baseDay)) / 7;
+            case MONTH:
+                return (year * 12L + month) - (baseYear * 12L + baseMonth);
+            case QUARTER:
+                return ((year * 12L + month) - (baseYear * 12L + baseMonth)) / 3;
+            default:
+                return (long) year - baseYear;
+        }
+    }
+
+    private long epochDay(int year, int month, int day) {
+        utc.clear();
+        utc.set(year, month, day);
+
+        long millis = utc.getTimeInMillis();
+        long days = millis / MILLIS_PER_DAY;
+
+        return millis < 0 && days * MILLIS_PER_DAY != millis ? days - 1 : days;
+    }
+
+    /**
+     * 计算第i个时间段开始的毫秒数
+     */
+    private long periodStart(int i) {
+        calendar.clear();
+
+        switch (unit) {
+            case DAY:
+                calendar.set(baseYear, baseMonth, baseDay + i);
+                break;
+            case WEEK:
+                calendar.set(baseYear, baseMonth, baseDay + 7 * i);
+                break;
+            case MONTH:
+                calendar.set(baseYear, baseMonth + i, 1);
+                break;
+            case QUARTER:
+                calendar.set(baseYear, baseMonth + 3 * i, 1);
+                break;
+            default:
+                calendar.set(baseYear + i, JANUARY, 1);
+                break;
+        }
+
+        return earliestOfDate(calendar.getTimeInMillis());
+    }
+
+    /**
+     * 找出与start在同一本地日期的最早时刻
+     *
+     * 零点有重复时Calendar取后一次，零点因夏令时不存在时Calendar会往后推，
+     * 这两种情况下前一毫秒的本地日期已经是同一天，需要往前找到本地时间刚到零点的时刻
+     */
+    private long earliestOfDate(long start) {
+        long wall = localMillis(start);
+        long midnight = wall - floorMod(wall, MILLIS_PER_DAY);
+
+        if (localMillis(start - 1) < midnight)
+            return start;
+
+        // 往前一天的本地时间在零点之前，二分查找本地时间到达零点的时刻
+        long lo = start - MILLIS_PER_DAY;
+        long hi = start - 1;
+        if (localMillis(lo) >= midnight)
+            return start;
+
+        while (hi - lo > 1) {
+            long mid = lo + (hi - lo) / 2;
+            if (localMillis(mid) >= midnight)
+                hi = mid;
+            else
+                lo = mid;
+        }
+
+        return hi;
+    }
+
+    private long localMillis(long time) {
+        return time + timeZone.getOffset(time);
+    }
+
+    private static long floorMod(long x, long y) {
+        long mod = x % y;
+        return mod < 0 ? mod + y : mod;
+    }
+}
@@ -5,6 +5,8 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static cn.kanejin.commons.util.StringUtils.isEmpty;
 import static java.util.Calendar.*;
@@ -62,6 +64,77 @@ public class DateUtils {
         }
     }
 
+    private static final ConcurrentMap<String, CachedDateFormat> CACHED_FORMATS =
+            new ConcurrentHashMap<String, CachedDateFormat>();
+
+    /**
+     * 获取指定格式的带缓存的日期格式化器
+     *
+     * 同一格式返回同一个实例，可以通过它查看缓存的命中率
+     *
+     * @param pattern 日期格式
+     * @return 带缓存的日期格式化器
+     */
+    public static CachedDateFormat getCachedFormat(String pattern) {
+        CachedDateFormat format = CACHED_FORMATS.get(pattern);
+        if (format != null)
+            return format;
+
+        format = new CachedDateFormat(pattern);
+        CachedDateFormat existing = CACHED_FORMATS.putIfAbsent(pattern, format);
+
+        return existing == null ? format : existing;
+    }
+
+    /**
+     * 使用缓存格式化日期
+     *
+     * 适用于连续格式化的日期大多在同一秒内的场景，比如日志
+     *
+     * @param date 日期
+     * @param pattern 格式
+     * @return 格式化后的日期字符串
+     * @see CachedDateFormat
+     */
+    public static String formatDateCached(Date date, String pattern) {
+        if (date == null)
+            return "";
+
+        return getCachedFormat(pattern).format(date.getTime());
+    }
+
+    /**
+     * 使用缓存格式化日期
+     *
+     * @param time 毫秒数(ms) since 1970/01/01 00:00:00 GMT.
+     * @param pattern 格式
+     * @return 格式化后的日期字符串
+     * @see CachedDateFormat
+     */
+    public static String formatDateCached(Long time, String pattern) {
+        if (time == null)
+            return "";
+
+        return getCachedFormat(pattern).format(time);
+    }
+
+    /**
+     * 使用缓存解析日期字符串
+     *
+     * 适用于重复解析相同日期字符串的场景
+     *
+     * @param dateString 日期字符串
+     * @param pattern 日期格式
+     * @return 解析后的日期
+     * @see CachedDateFormat
+     */
+    public static Date parseDateCached(String dateString, String pattern) {
+        if (isEmpty(dateString))
+            return null;
+
+        return getCachedFormat(pattern).parse(dateString);
+    }
+
 
 
     /**
@@ -312,6 +385,21 @@ public class DateUtils {
         return startAndEndOfYear(new Date());
     }
 
+    /**
+     * 遍历两个日期之间的时间段
+     *
+     * 一般与循环调用startAndEndOfXxx方法的结果一致，但不会创建Date数组，零点有跳变的日子见DatePeriodIterator
+     *
+     * @param start 开始日期
+     * @param end 结束日期
+     * @param unit 时间段的单位
+     * @return 时间段的迭代器
+     * @see DatePeriodIterator
+     */
+    public static DatePeriodIterator iteratePeriods(Date start, Date end, DatePeriodIterator.Unit unit) {
+        return new DatePeriodIterator(unit, start, end);
+    }
+
     private static void startOfDay(Calendar cal) {
         cal.set(HOUR_OF_DAY, 0);
         cal.set(MINUTE, 0);
@@ -0,0 +1,290 @@
+package cn.kanejin.commons.util;
+
+import java.math.BigInteger;
+
+/**
+ * 把double格式化为最短的、可以精确还原的十进制字符串
+ *
+ * 使用Raffaello Giulietti的Schubfach算法，输出的格式与Double.toString相同，
+ * 但总是取能还原为同一个double的最短十进制数，并且不创建中间对象。
+ *
+ * @see NumberUtils#formatDouble(double, char[], int)
+ * @author Kane Jin
+ */
+final class DoubleToDecimal {
+
+    private DoubleToDecimal() {
+    }
+
+    /**
+     * 格式化后的最大长度，例如"-2.2250738585072014E-308"
+     */
+    static final int MAX_CHARS = 24;
+
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final long T_MASK = (1L << (P - 1)) - 1;
+    private static final int BQ_MASK = 0x7FF;
+    private static final int C_TINY = 3;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final int H = 17;
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    /**
+     * 10^(-k)的126位近似值g，第2i个元素是g的高63位，第2i+1个元素是g的低63位
+     */
+    private static final long[] G = g();
+
+    private static final long[] POWERS_OF_TEN = new long[H + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= H; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    /**
+     * 格式化double
+     *
+     * @param v 浮点数
+     * @param buf 输出的字符数组，从offset开始至少要有MAX_CHARS个字符的空间
+     * @param offset 开始位置
+     * @return 写入的字符个数
+     */
+    static int toChars(double v, char[] buf, int offset) {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+
+        if (bq == BQ_MASK)
+            return special(t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity", buf, offset);
+
+        int index = offset;
+        if (bits < 0)
+            buf[index++] = '-';
+
+        if (bq != 0) {
+            // 规格化数
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+
+            // 整数直接输出
+            if (0 < mq && mq < P) {
+                long f = c >> mq;
+                if (f << mq == c)
+                    return toChars(f, 0, buf, index) - offset;
+            }
+
+            return toDecimal(-mq, c, 0, buf, index) - offset;
+        }
+
+        if (t != 0) {
+            // 非规格化数
+            return (t < C_TINY
+                    ? toDecimal(Q_MIN, 10 * t, -1, buf, index)
+                    : toDecimal(Q_MIN, t, 0, buf, index)) - offset;
+        }
+
+        return special(bits == 0 ? "0.0" : "-0.0", buf, offset);
+    }
+
+    private static int special(String s, char[] buf, int offset) {
+        s.getChars(0, s.length(), buf, offset);
+        return s.length();
+    }
+
+    /**
+     * 计算c * 2^q的最短十进制表示
+     */
+    private static int toDecimal(int q, long c, int dk, char[] buf, int index) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+
+        if (c != C_MIN | q == Q_MIN) {
+            // 相邻浮点数的间隔相等
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // 2的幂，下方的间隔只有上方的一半
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        long g1 = G[(k - K_MIN) << 1];
+        long g0 = G[(k - K_MIN) << 1 | 1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // 先尝试少一位数字：sp10 = 10 * floor(s / 10)
+            long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin)
+                return toChars(upin ? sp10 : tp10, k, buf, index);
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win)
+            return toChars(uin ? s : t, k + dk, buf, index);
+
+        // 两个都在舍入区间内，取离v更近的，一样近时取偶数
+        long cmp = vb - ((s + t) << 1);
+        return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buf, index);
+    }
+
+    /**
+     * 计算cp * g * 2^(-127)并向奇数舍入
+     */
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    /**
+     * 输出f * 10^e，格式与Double.toString相同
+     *
+     * @return 写入后的位置
+     */
+    private static int toChars(long f, int e, char[] buf, int index) {
+        // 去掉末尾的0
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+
+        int len = 1;
+        while (len < H && f >= POWERS_OF_TEN[len])
+            len++;
+
+        // 科学计数法的指数，v = d.ddd * 10^exp
+        int exp = e + len - 1;
+
+        if (exp >= 0 && exp < 7) {
+            if (len <= exp + 1) {
+                index = digits(f, len, buf, index);
+                for (int i = len; i <= exp; i++)
+                    buf[index++] = '0';
+                buf[index++] = '.';
+                buf[index++] = '0';
+            } else {
+                digits(f, len, buf, index + 1);
+                System.arraycopy(buf, index + 1, buf, index, exp + 1);
+                buf[index + exp + 1] = '.';
+                index += len + 1;
+            }
+            return index;
+        }
+
+        if (exp < 0 && exp >= -3) {
+            buf[index++] = '0';
+            buf[index++] = '.';
+            for (int i = -1; i > exp; i--)
+                buf[index++] = '0';
+            return digits(f, len, buf, index);
+        }
+
+        digits(f, len, buf, index + 1);
+        buf[index] = buf[index + 1];
+        buf[index + 1] = '.';
+        if (len == 1) {
+            buf[index + 2] = '0';
+            index += 3;
+        } else {
+            index += len + 1;
+        }
+
+        buf[index++] = 'E';
+        if (exp < 0) {
+            buf[index++] = '-';
+            exp = -exp;
+        }
+        if (exp >= 100)
+            buf[index++] = (char) ('0' + exp / 100);
+        if (exp >= 10)
+            buf[index++] = (char) ('0' + exp / 10 % 10);
+        buf[index++] = (char) ('0' + exp % 10);
+
+        return index;
+    }
+
+    private static int digits(long f, int len, char[] buf, int index) {
+        for (int i = index + len - 1; i >= index; i--) {
+            buf[i] = (char) ('0' + f % 10);
+            f /= 10;
+        }
+        return index + len;
+    }
+
+    /**
+     * floor(log10(2^e))
+     */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661971961083L >> 41);
+    }
+
+    /**
+     * floor(log10(3/4 * 2^e))
+     */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661971961083L - 274743187321L >> 41);
+    }
+
+    /**
+     * floor(log2(10^e))
+     */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913124641741L >> 38);
+    }
+
+    /**
+     * 非负数相乘的高64位
+     */
+    private static long multiplyHigh(long x, long y) {
+        return FastDoubleParser.unsignedMultiplyHigh(x, y);
+    }
+
+    /**
+     * 10^(-k) = β * 2^r，2^125 &lt;= β &lt; 2^126，g = floor(β) + 1
+     */
+    private static long[] g() {
+        long[] table = new long[(K_MAX - K_MIN + 1) * 2];
+        BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int shift = 125 - flog2pow10(-k);
+            BigInteger beta;
+
+            if (k <= 0) {
+                BigInteger pow10 = BigInteger.TEN.pow(-k);
+                beta = shift >= 0 ? pow10.shiftLeft(shift) : pow10.shiftRight(-shift);
+            } else {
+                beta = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k));
+            }
+
+            BigInteger g = beta.add(BigInteger.ONE);
+            int index = (k - K_MIN) << 1;
+            table[index] = g.shiftRight(63).longValue();
+            table[index + 1] = g.and(mask).longValue();
+        }
+
+        return table;
+    }
+}
@@ -0,0 +1,388 @@
+package cn.kanejin.commons.util;
+
+import java.math.BigInteger;
+
+/**
+ * 不抛出异常的浮点数解析
+ *
+ * 使用Eisel-Lemire算法把十进制字符串正确舍入为double或float，
+ * 有效数字超过19位且无法确定舍入结果时，以及十六进制的浮点数，交给JDK解析。
+ *
+ * 支持的格式与Double.parseDouble相同。
+ *
+ * @see NumberUtils#parseDouble(CharSequence, double)
+ * @author Kane Jin
+ */
+final class FastDoubleParser {
+
+    private FastDoubleParser() {
+    }
+
+    private static final int SMALLEST_POWER_OF_TEN = -342;
+    private static final int LARGEST_POWER_OF_TEN = 308;
+
+    /**
+     * 5^q的128位近似值，q在[-342, 308]之间，第2i个元素是高64位，第2i+1个元素是低64位
+     */
+    private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    /**
+     * 二进制浮点数的参数，依次为：
+     * 尾数位数, 最小指数, 无穷大的指数, 最小的10的幂, 最大的10的幂,
+     * 需要处理就近取偶的10的幂的范围, 可以直接用浮点运算的10的幂的范围和尾数的上限
+     */
+    private static final int[] DOUBLE_FORMAT = {52, -1023, 0x7FF, -342, 308, -4, 23, 22, 53};
+    private static final int[] FLOAT_FORMAT = {23, -127, 0xFF, -65, 38, -17, 10, 10, 24};
+
+    /**
+     * 无法解析时的返回值，不是任何double或float的二进制表示
+     */
+    static final long INVALID = -1L;
+
+    /**
+     * 解析double
+     *
+     * @param str 字符串
+     * @param from 开始位置
+     * @param to 结束位置（不包含）
+     * @return double的二进制表示，无法解析时返回INVALID
+     */
+    static long parseDoubleBits(CharSequence str, int from, int to) {
+        return parse(str, null, from, to, false);
+    }
+
+    /**
+     * 解析double，字节按ASCII处理
+     */
+    static long parseDoubleBits(byte[] bytes, int from, int to) {
+        return parse(null, bytes, from, to, false);
+    }
+
+    /**
+     * 解析float
+     *
+     * @return float的二进制表示（无符号），无法解析时返回INVALID
+     */
+    static long parseFloatBits(CharSequence str, int from, int to) {
+        return parse(str, null, from, to, true);
+    }
+
+    /**
+     * 解析float，字节按ASCII处理
+     */
+    static long parseFloatBits(byte[] bytes, int from, int to) {
+        return parse(null, bytes, from, to, true);
+    }
+
+    /**
+     * 字符串和字节数组只有一个不为null
+     */
+    private static long parse(CharSequence str, byte[] bytes, int from, int to, boolean single) {
+        // 与String.trim()一样去掉首尾的空白字符
+        while (from < to && charAt(str, bytes, from) <= ' ')
+            from++;
+        while (to > from && charAt(str, bytes, to - 1) <= ' ')
+            to--;
+
+        if (from == to)
+            return INVALID;
+
+        int start = from;
+        int i = from;
+        boolean negative = false;
+
+        char c = charAt(str, bytes, i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            if (++i == to)
+                return INVALID;
+            c = charAt(str, bytes, i);
+        }
+
+        long signBit = !negative ? 0 : single ? 0x80000000L : Long.MIN_VALUE;
+
+        if (c == 'N' || c == 'I') {
+            String special = c == 'N' ? "NaN" : "Infinity";
+            if (to - i != special.length())
+                return INVALID;
+            for (int j = 0; j < special.length(); j++) {
+                if (charAt(str, bytes, i + j) != special.charAt(j))
+                    return INVALID;
+            }
+            if (c == 'N')
+                return single ? Float.floatToRawIntBits(Float.NaN) : Double.doubleToRawLongBits(Double.NaN);
+            return signBit | (single ? 0xFFL << 23 : 0x7FFL << 52);
+        }
+
+        if (c == '0' && i + 1 < to && (charAt(str, bytes, i + 1) | 0x20) == 'x')
+            return parseByJdk(str, bytes, start, to, single);
+
+        // 只保留前19位有效数字，剩下的数字只记录是否有被截断
+        long w = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        boolean anyDigit = false;
+
+        for (; i < to; i++) {
+            int d = charAt(str, bytes, i) - '0';
+            if (d < 0 || d > 9)
+                break;
+            anyDigit = true;
+            if (digits < 19) {
+                if (w != 0 || d != 0) {
+                    w = w * 10 + d;
+                    digits++;
+                }
+            } else {
+                exponent++;
+                truncated |= d != 0;
+            }
+        }
+
+        if (i < to && charAt(str, bytes, i) == '.') {
+            for (i++; i < to; i++) {
+                int d = charAt(str, bytes, i) - '0';
+                if (d < 0 || d > 9)
+                    break;
+                anyDigit = true;
+                if (digits < 19) {
+                    if (w != 0 || d != 0) {
+                        w = w * 10 + d;
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    truncated |= d != 0;
+                }
+            }
+        }
+
+        if (!anyDigit)
+            return INVALID;
+
+        if (i < to && (charAt(str, bytes, i) | 0x20) == 'e') {
+            if (++i == to)
+                return INVALID;
+
+            boolean negativeExponent = false;
+            c = charAt(str, bytes, i);
+            if (c == '-' || c == '+') {
+                negativeExponent = c == '-';
+                if (++i == to)
+                    return INVALID;
+            }
+
+            int e = 0;
+            int expStart = i;
+            for (; i < to; i++) {
+                int d = charAt(str, bytes, i) - '0';
+                if (d < 0 || d > 9)
+                    break;
+                // 超过这个范围的指数的结果都是0或无穷大
+                if (e < 100000)
+                    e = e * 10 + d;
+            }
+            if (i == expStart)
+                return INVALID;
+
+            exponent += negativeExponent ? -e : e;
+        }
+
+        if (i < to) {
+            int suffix = charAt(str, bytes, i) | 0x20;
+            if (i + 1 != to || (suffix != 'f' && suffix != 'd'))
+                return INVALID;
+        }
+
+        int[] format = single ? FLOAT_FORMAT : DOUBLE_FORMAT;
+
+        if (!truncated && exponent >= -format[7] && exponent <= format[7]
+                && w >= 0 && w <= 1L << format[8]) {
+            long bits = single
+                    ? Float.floatToRawIntBits(fastPathFloat(w, exponent))
+                    : Double.doubleToRawLongBits(fastPathDouble(w, exponent));
+            return signBit | bits;
+        }
+
+        long bits = eiselLemire(w, exponent, format);
+
+        if (truncated && bits >= 0 && bits != eiselLemire(w + 1, exponent, format))
+            bits = -1;
+
+        if (bits < 0)
+            return parseByJdk(str, bytes, start, to, single);
+
+        return signBit | bits;
+    }
+
+    private static char charAt(CharSequence str, byte[] bytes, int index) {
+        return str != null ? str.charAt(index) : (char) (bytes[index] & 0xFF);
+    }
+
+    /**
+     * Clinger的快速路径：尾数和10的幂都能精确表示时，一次浮点运算的结果就是正确舍入的
+     */
+    private static double fastPathDouble(long w, int exponent) {
+        double value = w;
+        return exponent < 0
+                ? value / DOUBLE_POWERS_OF_TEN[-exponent]
+                : value * DOUBLE_POWERS_OF_TEN[exponent];
+    }
+
+    private static float fastPathFloat(long w, int exponent) {
+        float value = w;
+        return exponent < 0
+                ? value / FLOAT_POWERS_OF_TEN[-exponent]
+                : value * FLOAT_POWERS_OF_TEN[exponent];
+    }
+
+    private static long parseByJdk(CharSequence str, byte[] bytes, int from, int to, boolean single) {
+        String s;
+        if (str != null) {
+            s = str.subSequence(from, to).toString();
+        } else {
+            char[] chars = new char[to - from];
+            for (int i = from; i < to; i++)
+                chars[i - from] = (char) (bytes[i] & 0xFF);
+            s = new String(chars);
+        }
+
+        try {
+            return single
+                    ? Float.floatToRawIntBits(Float.parseFloat(s)) & 0xFFFFFFFFL
+                    : Double.doubleToRawLongBits(Double.parseDouble(s));
+        } catch (NumberFormatException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * 计算w * 10^q正确舍入后的二进制表示（不含符号位），w为无符号数
+     *
+     * @return 二进制表示，无法确定时返回-1
+     */
+    private static long eiselLemire(long w, int q, int[] format) {
+        int mantissaBits = format[0];
+
+        if (w == 0 || q < format[3])
+            return 0;
+        if (q > format[4])
+            return (long) format[2] << mantissaBits;
+
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        // w * 5^q的高128位，只有高位不足以确定结果时才计算低位
+        int index = (q - SMALLEST_POWER_OF_TEN) << 1;
+        long high = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index]);
+        long low = w * POWERS_OF_FIVE[index];
+
+        long precisionMask = -1L >>> (mantissaBits + 3);
+        if ((high & precisionMask) == precisionMask) {
+            long secondHigh = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            low += secondHigh;
+            if (unsignedLessThan(low, secondHigh))
+                high++;
+            if (low == -1L && (q < -27 || q > 55))
+                return -1;
+        }
+
+        int upperBit = (int) (high >>> 63);
+        int shift = upperBit + 64 - mantissaBits - 3;
+        long mantissa = high >>> shift;
+        int power2 = (((152170 + 65536) * q) >> 16) + 63 + upperBit - lz - format[1];
+
+        if (power2 <= 0) {
+            // 非规格化数
+            if (-power2 + 1 >= 64)
+                return 0;
+            mantissa >>>= -power2 + 1;
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            power2 = mantissa < 1L << mantissaBits ? 0 : 1;
+            return ((long) power2 << mantissaBits) | (mantissa & ((1L << mantissaBits) - 1));
+        }
+
+        // 正好在两个浮点数中间时就近取偶
+        if (unsignedLessThan(low, 2) && q >= format[5] && q <= format[6]
+                && (mantissa & 3) == 1 && mantissa << shift == high)
+            mantissa &= ~1L;
+
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= 2L << mantissaBits) {
+            mantissa = 1L << mantissaBits;
+            power2++;
+        }
+        mantissa &= ~(1L << mantissaBits);
+
+        if (power2 >= format[2])
+            return (long) format[2] << mantissaBits;
+
+        return ((long) power2 << mantissaBits) | mantissa;
+    }
+
+    /**
+     * 无符号64位乘法的高64位
+     */
+    static long unsignedMultiplyHigh(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+
+        long p00 = x0 * y0;
+        long p01 = x0 * y1;
+        long p10 = x1 * y0;
+        long p11 = x1 * y1;
+
+        long middle = p10 + (p00 >>> 32) + (p01 & 0xFFFFFFFFL);
+
+        return p11 + (middle >>> 32) + (p01 >>> 32);
+    }
+
+    private static boolean unsignedLessThan(long x, long y) {
+        return x + Long.MIN_VALUE < y + Long.MIN_VALUE;
+    }
+
+    private static long[] powersOfFive() {
+        long[] table = new long[(LARGEST_POWER_OF_TEN - SMALLEST_POWER_OF_TEN + 1) * 2];
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        BigInteger five = BigInteger.valueOf(5);
+
+        for (int q = SMALLEST_POWER_OF_TEN; q <= LARGEST_POWER_OF_TEN; q++) {
+            BigInteger value;
+
+            if (q < 0) {
+                BigInteger power5 = five.pow(-q);
+                int z = power5.bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                value = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+            } else {
+                value = five.pow(q);
+                if (value.bitLength() < 128)
+                    value = value.shiftLeft(128 - value.bitLength());
+            }
+
+            // 截断到128位
+            if (value.bitLength() > 128)
+                value = value.shiftRight(value.bitLength() - 128);
+
+            int index = (q - SMALLEST_POWER_OF_TEN) << 1;
+            table[index] = value.shiftRight(64).longValue();
+            table[index + 1] = value.and(mask).longValue();
+        }
+
+        return table;
+    }
+}
@@ -1,5 +1,6 @@
 package cn.kanejin.commons.util;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 
 import static cn.kanejin.commons.util.StringUtils.isEmpty;
@@ -82,11 +83,7 @@ public class NumberUtils {
         if (isEmpty(str))
             return defaultValue;
 
-        try {
-            return Float.parseFloat(str);
-        } catch (NumberFormatException e) {
-            return defaultValue;
-        }
+        return parseFloat(str, defaultValue);
     }
 
     /**
@@ -100,11 +97,156 @@ public class NumberUtils {
         if (isEmpty(str))
             return defaultValue;
 
-        try {
-            return Double.parseDouble(str);
-        } catch (NumberFormatException e) {
+        long bits = FastDoubleParser.parseDoubleBits(str, 0, str.length());
+        if (bits == FastDoubleParser.INVALID)
+            return defaultValue;
+
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * 把字符串解析成double，不会抛出异常
+     *
+     * 支持的格式与Double.parseDouble相同，结果是正确舍入的
+     *
+     * @param str 字符串
+     * @param defaultValue 字符串为空或无法解析时的默认值
+     * @return 解析后的double
+     */
+    public static double parseDouble(CharSequence str, double defaultValue) {
+        if (str == null)
             return defaultValue;
+
+        return parseDouble(str, 0, str.length(), defaultValue);
+    }
+
+    /**
+     * 把字符串的一部分解析成double，不会抛出异常
+     *
+     * @param str 字符串
+     * @param offset 开始位置
+     * @param length 长度
+     * @param defaultValue 无法解析时的默认值
+     * @return 解析后的double
+     */
+    public static double parseDouble(CharSequence str, int offset, int length, double defaultValue) {
+        long bits = FastDoubleParser.parseDoubleBits(str, offset, offset + length);
+
+        return bits == FastDoubleParser.INVALID ? defaultValue : Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * 把ASCII字节解析成double，不会抛出异常
+     *
+     * @param bytes 字节数组
+     * @param offset 开始位置
+     * @param length 长度
+     * @param defaultValue 无法解析时的默认值
+     * @return 解析后的double
+     */
+    public static double parseDouble(byte[] bytes, int offset, int length, double defaultValue) {
+        long bits = FastDoubleParser.parseDoubleBits(bytes, offset, offset + length);
+
+        return bits == FastDoubleParser.INVALID ? defaultValue : Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * 把字符串解析成float，不会抛出异常
+     *
+     * 支持的格式与Float.parseFloat相同，结果是正确舍入的
+     *
+     * @param str 字符串
+     * @param defaultValue 字符串为空或无法解析时的默认值
+     * @return 解析后的float
+     */
+    public static float parseFloat(CharSequence str, float defaultValue) {
+        if (str == null)
+            return defaultValue;
+
+        return parseFloat(str, 0, str.length(), defaultValue);
+    }
+
+    /**
+     * 把字符串的一部分解析成float，不会抛出异常
+     *
+     * @param str 字符串
+     * @param offset 开始位置
+     * @param length 长度
+     * @param defaultValue 无法解析时的默认值
+     * @return 解析后的float
+     */
+    public static float parseFloat(CharSequence str, int offset, int length, float defaultValue) {
+        long bits = FastDoubleParser.parseFloatBits(str, offset, offset + length);
+
+        return bits == FastDoubleParser.INVALID ? defaultValue : Float.intBitsToFloat((int) bits);
+    }
+
+    /**
+     * 把ASCII字节解析成float，不会抛出异常
+     *
+     * @param bytes 字节数组
+     * @param offset 开始位置
+     * @param length 长度
+     * @param defaultValue 无法解析时的默认值
+     * @return 解析后的float
+     */
+    public static float parseFloat(byte[] bytes, int offset, int length, float defaultValue) {
+        long bits = FastDoubleParser.parseFloatBits(bytes, offset, offset + length);
+
+        return bits == FastDoubleParser.INVALID ? defaultValue : Float.intBitsToFloat((int) bits);
+    }
+
+    /**
+     * 格式化double
+     *
+     * 格式与Double.toString相同，但总是输出能还原为同一个double的最短的十进制数
+     *
+     * @param value 浮点数
+     * @return 格式化后的字符串
+     */
+    public static String formatDouble(double value) {
+        char[] buf = new char[DoubleToDecimal.MAX_CHARS];
+
+        return new String(buf, 0, DoubleToDecimal.toChars(value, buf, 0));
+    }
+
+    /**
+     * 把double格式化到字符数组中
+     *
+     * @param value 浮点数
+     * @param buf 字符数组，从offset开始至少要有24个字符的空间
+     * @param offset 开始位置
+     * @return 写入的字符个数
+     * @see #formatDouble(double)
+     */
+    public static int formatDouble(double value, char[] buf, int offset) {
+        if (buf.length - offset < DoubleToDecimal.MAX_CHARS)
+            throw new IndexOutOfBoundsException("Not enough space in buffer : " + (buf.length - offset));
+
+        return DoubleToDecimal.toChars(value, buf, offset);
+    }
+
+    private static final ThreadLocal<char[]> FORMAT_BUFFER = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[DoubleToDecimal.MAX_CHARS];
         }
+    };
+
+    /**
+     * 把double格式化后追加到Appendable中
+     *
+     * @param value 浮点数
+     * @param out 输出
+     * @throws IOException 输出出错
+     * @see #formatDouble(double)
+     */
+    public static void formatDouble(double value, Appendable out) throws IOException {
+        char[] buf = FORMAT_BUFFER.get();
+        int length = DoubleToDecimal.toChars(value, buf, 0);
+
+        for (int i = 0; i < length; i++)
+            out.append(buf[i]);
     }
 
     /**
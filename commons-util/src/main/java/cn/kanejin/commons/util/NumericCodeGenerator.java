@@ -0,0 +1,464 @@
+package cn.kanejin.commons.util;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 批量生成纯数字的验证码、券码
+ *
+ * 生成的数字与StringUtils.random(length, true)一样，首字符不为'0'。
+ * 每次从随机数生成器取一个64位的随机数，可以得到18位没有偏差的随机数字，
+ * 不需要像逐位生成那样每个数字都取一次随机数。
+ *
+ * 指定预计生成的个数时，会在内存中过滤重复的数字，保证同一个生成器生成的数字不重复。
+ * 按数字的长度和预计生成的个数，在位图和布隆过滤器中选占用内存较少的一种：
+ * 位图精确记录所有可能的数字，直到全部生成完才会抛出异常；
+ * 布隆过滤器会误判少量没有生成过的数字为重复，跳过重新生成，生成的个数超过预计时会自动扩容，误判率保持在1%左右。
+ *
+ * 本类不是线程安全的，多个线程应该各自使用自己的生成器。
+ *
+ * @author Kane Jin
+ */
+public class NumericCodeGenerator {
+
+    /**
+     * 一个随机数可以提取的数字个数
+     */
+    private static final int DIGITS_PER_DRAW = 18;
+
+    /**
+     * 10^18的整数倍中小于2^63的最大值，大于等于这个值的随机数舍弃，避免取模的偏差
+     */
+    private static final long DRAW_LIMIT = 9000000000000000000L;
+
+    /**
+     * 布隆过滤器的误判率
+     */
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * 使用布隆过滤器时，连续生成重复数字的最大次数，超过时认为数字已经用完
+     */
+    private static final int MAX_ATTEMPTS = 1000;
+
+    /**
+     * 使用位图时，剩下的数字不超过所有数字的1/64后，改为直接从剩下的数字中选取
+     */
+    private static final int DENSE_RATIO = 64;
+
+    private final int length;
+    private final Random random;
+    private final DuplicateFilter filter;
+
+    private long pool;
+    private int poolSize;
+
+    /**
+     * 使用SecureRandom，不过滤重复
+     *
+     * @param length 数字的长度
+     */
+    public NumericCodeGenerator(int length) {
+        this(length, new SecureRandom());
+    }
+
+    /**
+     * 不过滤重复
+     *
+     * @param length 数字的长度
+     * @param random 随机数生成器
+     */
+    public NumericCodeGenerator(int length, Random random) {
+        this(length, random, 0);
+    }
+
+    /**
+     * @param length 数字的长度
+     * @param random 随机数生成器
+     * @param expectedCount 预计生成的个数，大于0时过滤重复，此时长度不能超过18。
+     *                      用于选择过滤器和确定布隆过滤器的大小，不限制实际生成的个数
+     */
+    public NumericCodeGenerator(int length, Random random, int expectedCount) {
+        if (length <= 0)
+            throw new IllegalArgumentException("Length must be greater than 0 : " + length);
+        if (random == null)
+            throw new IllegalArgumentException("Random must not be null");
+        if (expectedCount < 0)
+            throw new IllegalArgumentException("Expected count must not be negative : " + expectedCount);
+
+        this.length = length;
+        this.random = random;
+
+        if (expectedCount == 0) {
+            this.filter = null;
+        } else {
+            if (length > DIGITS_PER_DRAW)
+                throw new IllegalArgumentException("Length must not be greater than "
+                        + DIGITS_PER_DRAW + " when filtering duplicates : " + length);
+
+            // 首位不为0，共9 * 10^(length-1)个数字
+            long space = 9;
+            for (int i = 1; i < length; i++)
+                space *= 10;
+
+            // 位图每个可能的数字占1位，选占用内存较少的过滤器
+            long bloomBits = BloomLayer.bits(expectedCount, BloomFilter.FIRST_RATE);
+
+            this.filter = space <= Integer.MAX_VALUE && space <= bloomBits
+                    ? new BitSetFilter((int) space)
+                    : new BloomFilter(expectedCount);
+        }
+    }
+
+    /**
+     * @return 数字的长度
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 生成一个数字
+     *
+     * @return 数字字符串
+     */
+    public String next() {
+        char[] chars = new char[length];
+        next(chars, 0);
+
+        return new String(chars);
+    }
+
+    /**
+     * 生成一个数字，写入到字符数组中
+     *
+     * @param dst 字符数组，从offset开始至少要有length个字符的空间
+     * @param offset 开始位置
+     */
+    public void next(char[] dst, int offset) {
+        checkSpace(dst.length, offset, length);
+
+        if (filter == null) {
+            for (int i = 0; i < length; i++)
+                dst[offset + i] = (char) ('0' + nextDigit(i == 0));
+            return;
+        }
+
+        long value = filter.next();
+        for (int i = offset + length - 1; i >= offset; i--) {
+            dst[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * 生成一个数字，以ASCII字节写入到字节数组中
+     *
+     * @param dst 字节数组，从offset开始至少要有length个字节的空间
+     * @param offset 开始位置
+     */
+    public void next(byte[] dst, int offset) {
+        checkSpace(dst.length, offset, length);
+
+        if (filter == null) {
+            for (int i = 0; i < length; i++)
+                dst[offset + i] = (byte) ('0' + nextDigit(i == 0));
+            return;
+        }
+
+        long value = filter.next();
+        for (int i = offset + length - 1; i >= offset; i--) {
+            dst[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * 批量生成数字，依次写入到字符数组中
+     *
+     * @param dst 字符数组，从offset开始至少要有count * length个字符的空间
+     * @param offset 开始位置
+     * @param count 生成的个数
+     */
+    public void nextBatch(char[] dst, int offset, int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("Count must not be negative : " + count);
+        checkSpace(dst.length, offset, (long) count * length);
+
+        for (int i = 0; i < count; i++)
+            next(dst, offset + i * length);
+    }
+
+    /**
+     * 批量生成数字，以ASCII字节依次写入到字节数组中
+     *
+     * @param dst 字节数组，从offset开始至少要有count * length个字节的空间
+     * @param offset 开始位置
+     * @param count 生成的个数
+     */
+    public void nextBatch(byte[] dst, int offset, int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("Count must not be negative : " + count);
+        checkSpace(dst.length, offset, (long) count * length);
+
+        for (int i = 0; i < count; i++)
+            next(dst, offset + i * length);
+    }
+
+    /**
+     * 批量生成数字
+     *
+     * @param count 生成的个数
+     * @return 数字字符串的数组
+     */
+    public String[] nextBatch(int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("Count must not be negative : " + count);
+
+        String[] codes = new String[count];
+        char[] chars = new char[length];
+
+        for (int i = 0; i < count; i++) {
+            next(chars, 0);
+            codes[i] = new String(chars);
+        }
+
+        return codes;
+    }
+
+    /**
+     * 取一个随机数字，first为true时取1-9，否则取0-9
+     */
+    private int nextDigit(boolean first) {
+        for (;;) {
+            if (poolSize == 0) {
+                long draw;
+                do {
+                    draw = random.nextLong() >>> 1;
+                } while (draw >= DRAW_LIMIT);
+
+                pool = draw;
+                poolSize = DIGITS_PER_DRAW;
+            }
+
+            int d = (int) (pool % 10);
+            pool /= 10;
+            poolSize--;
+
+            if (d != 0 || !first)
+                return d;
+        }
+    }
+
+    /**
+     * 随机生成一个数字，可能与生成过的重复
+     */
+    private long nextValue() {
+        long value = nextDigit(true);
+        for (int i = 1; i < length; i++)
+            value = value * 10 + nextDigit(false);
+
+        return value;
+    }
+
+    /**
+     * SplitMix64的混合函数
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static void checkSpace(int arrayLength, int offset, long required) {
+        if (offset < 0 || arrayLength - offset < required)
+            throw new IndexOutOfBoundsException("Not enough space : " + (arrayLength - offset) + ", Required : " + required);
+    }
+
+    /**
+     * 重复数字的过滤器
+     */
+    private interface DuplicateFilter {
+        /**
+         * @return 没有生成过的数字，并记录下来
+         */
+        long next();
+    }
+
+    /**
+     * 用位图精确记录生成过的数字
+     *
+     * 剩下的数字很少时，随机生成的大多是重复的，这时把剩下的数字列出来直接从中选取
+     */
+    private final class BitSetFilter implements DuplicateFilter {
+        private final BitSet bits;
+        private final int space;
+        private final long base;
+        private int count;
+
+        /**
+         * 剩下的数字与base的差，只在剩下的数字很少时创建
+         */
+        private int[] remaining;
+
+        private BitSetFilter(int space) {
+            this.bits = new BitSet(space);
+            this.space = space;
+            this.base = space / 9;
+        }
+
+        public long next() {
+            if (count == space)
+                throw new IllegalStateException("All " + space + " codes of length " + length + " have been generated");
+
+            if (remaining == null && space - count <= space / DENSE_RATIO) {
+                remaining = new int[space - count];
+                int clear = -1;
+                for (int i = 0; i < remaining.length; i++) {
+                    clear = bits.nextClearBit(clear + 1);
+                    remaining[i] = clear;
+                }
+            }
+
+            int index;
+            if (remaining != null) {
+                // 与最后一个交换后移除，剩下的数字始终在数组的前面
+                int i = random.nextInt(space - count);
+                index = remaining[i];
+                remaining[i] = remaining[space - count - 1];
+            } else {
+                do {
+                    index = (int) (nextValue() - base);
+                } while (bits.get(index));
+            }
+
+            bits.set(index);
+            count++;
+
+            return base + index;
+        }
+    }
+
+    /**
+     * 用布隆过滤器记录生成过的数字
+     *
+     * 记录的个数达到容量时，增加一层容量加倍、误判率减半的过滤器(Scalable Bloom Filter)，
+     * 第一层的误判率是FALSE_POSITIVE_RATE的一半，各层之和保持在FALSE_POSITIVE_RATE左右
+     */
+    private final class BloomFilter implements DuplicateFilter {
+        private static final double FIRST_RATE = FALSE_POSITIVE_RATE / 2;
+
+        private final List<BloomLayer> layers = new ArrayList<BloomLayer>();
+        private BloomLayer current;
+
+        private BloomFilter(int expectedCount) {
+            current = new BloomLayer(expectedCount, FIRST_RATE);
+            layers.add(current);
+        }
+
+        public long next() {
+            for (int attempt = 0; ; attempt++) {
+                long value = nextValue();
+                if (add(value))
+                    return value;
+
+                if (attempt >= MAX_ATTEMPTS)
+                    throw new IllegalStateException("Too many duplicate codes, the codes of length "
+                            + length + " may be exhausted");
+            }
+        }
+
+        /**
+         * @return 如果数字没有出现过，记录并返回true，否则返回false
+         */
+        private boolean add(long value) {
+            long h1 = mix(value);
+            long h2 = mix(h1) | 1;
+
+            for (int i = 0; i < layers.size() - 1; i++) {
+                if (layers.get(i).contains(h1, h2))
+                    return false;
+            }
+
+            if (!current.add(h1, h2))
+                return false;
+
+            if (current.isFull()) {
+                current = new BloomLayer(current.capacity * 2, current.falsePositiveRate / 2);
+                layers.add(current);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * 布隆过滤器的一层
+     */
+    private static final class BloomLayer {
+        private final long capacity;
+        private final double falsePositiveRate;
+
+        private final long[] words;
+        private final long size;
+        private final int hashes;
+        private long count;
+
+        private BloomLayer(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            this.size = bits(capacity, falsePositiveRate);
+            this.words = new long[(int) (size >>> 6)];
+            this.hashes = Math.max(1, (int) Math.round((double) size / capacity * Math.log(2)));
+        }
+
+        /**
+         * @return 记录capacity个数字、误判率为falsePositiveRate时需要的位数，是64的整数倍
+         */
+        private static long bits(long capacity, double falsePositiveRate) {
+            double ln2 = Math.log(2);
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+
+            return Math.max(64, (bits + 63) & ~63L);
+        }
+
+        private boolean isFull() {
+            return count >= capacity;
+        }
+
+        private boolean contains(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long index = ((h1 + i * h2) >>> 1) % size;
+                if ((words[(int) (index >>> 6)] & (1L << index)) == 0)
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * @return 如果没有出现过，记录并返回true，否则返回false
+         */
+        private boolean add(long h1, long h2) {
+            boolean added = false;
+
+            for (int i = 0; i < hashes; i++) {
+                long index = ((h1 + i * h2) >>> 1) % size;
+                long mask = 1L << index;
+                int word = (int) (index >>> 6);
+                if ((words[word] & mask) == 0) {
+                    words[word] |= mask;
+                    added = true;
+                }
+            }
+
+            if (added)
+                count++;
+
+            return added;
+        }
+    }
+}
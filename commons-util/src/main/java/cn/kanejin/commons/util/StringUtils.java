@@ -60,7 +60,7 @@ public class StringUtils {
         return str == null ? "" : str;
     }
 
-    private static final char[] CHARS =
+    static final char[] CHARS =
             "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
     private static final int CHARS_LENGTH = CHARS.length;
     private static final Random RANDOM = new Random();
@@ -96,22 +96,8 @@ public class StringUtils {
 
         if (length <= 0)
             throw new IllegalArgumentException("Argument length must be greater than 0 : " + length);
-        StringBuilder sb = new StringBuilder();
-
-        for (;;) {
-            int i = RANDOM.nextInt(10);
-
-            if (i > 0) {
-                sb.append(i);
-                break;
-            }
-        }
-
-        for (int i = 1; i < length; i++) {
-            sb.append(RANDOM.nextInt(10));
-        }
 
-        return sb.toString();
+        return new NumericCodeGenerator(length, RANDOM).next();
     }
 
 
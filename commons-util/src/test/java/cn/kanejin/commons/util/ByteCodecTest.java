@@ -0,0 +1,108 @@
+package cn.kanejin.commons.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 测试ByteCodec的流式编码和解码，重点是流的缓冲区边界（4096个字符）
+ *
+ * @author Kane Jin
+ */
+public class ByteCodecTest {
+
+    private static final long SEED = 20170901L;
+
+    /**
+     * 编码后长度在4096、8192个字符附近的字节数
+     */
+    private static final int[] BASE64_LENGTHS = {
+            0, 1, 2, 3, 3069, 3070, 3071, 3072, 3073, 3074, 6141, 6142, 6143, 6144, 6145
+    };
+
+    private static final int[] HEX_LENGTHS = {
+            0, 1, 2047, 2048, 2049, 4095, 4096, 4097
+    };
+
+    @Test
+    public void testBase64StreamRoundTrip() throws IOException {
+        for (int length : BASE64_LENGTHS) {
+            byte[] data = randomBytes(length);
+
+            assertStreamRoundTrip(ByteCodec.BASE64, data);
+            assertStreamRoundTrip(ByteCodec.BASE64_URL, data);
+        }
+    }
+
+    @Test
+    public void testHexStreamRoundTrip() throws IOException {
+        for (int length : HEX_LENGTHS)
+            assertStreamRoundTrip(ByteCodec.HEX, randomBytes(length));
+    }
+
+    /**
+     * 补位的数据正好填满缓冲区时，只要后面没有输入就是合法的
+     */
+    @Test
+    public void testPaddingAtBufferBoundary() throws IOException {
+        for (int length : BASE64_LENGTHS) {
+            byte[] data = randomBytes(length);
+            String padded = ByteCodec.BASE64.encode(data);
+
+            assertArrayEquals("length " + length, data, decodeStream(ByteCodec.BASE64, padded));
+            assertArrayEquals("length " + length, data,
+                    decodeStream(ByteCodec.BASE64_URL, padded.replace('+', '-').replace('/', '_')));
+        }
+    }
+
+    @Test
+    public void testPaddingBeforeEndOfInput() {
+        for (int length : new int[] {1, 3070, 3071}) {
+            String text = ByteCodec.BASE64.encode(randomBytes(length)) + "AAAA";
+
+            try {
+                decodeStream(ByteCodec.BASE64, text);
+                fail("padding before end of input accepted, length " + length);
+            } catch (IOException e) {
+                // 预期的异常
+            }
+        }
+    }
+
+    private static void assertStreamRoundTrip(ByteCodec codec, byte[] data) throws IOException {
+        StringBuilder text = new StringBuilder();
+        OutputStream out = codec.encodingStream(text);
+        out.write(data);
+        out.close();
+
+        assertEquals(codec + " length " + data.length, codec.encode(data), text.toString());
+        assertArrayEquals(codec + " length " + data.length, data, decodeStream(codec, text.toString()));
+    }
+
+    private static byte[] decodeStream(ByteCodec codec, String text) throws IOException {
+        InputStream in = codec.decodingStream(new StringReader(text));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        int n;
+        while ((n = in.read(buf)) >= 0)
+            out.write(buf, 0, n);
+        in.close();
+
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(SEED + length).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,334 @@
+package cn.kanejin.commons.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 与JDK对照测试NumberUtils中浮点数的解析和格式化
+ *
+ * 随机数使用固定的种子，失败时可以重现
+ *
+ * @author Kane Jin
+ */
+public class NumberUtilsTest {
+
+    private static final long SEED = 20170824L;
+
+    private static final int RANDOM_CASES = 200000;
+
+    /**
+     * 解析失败时返回的默认值，与任何合法的结果都不同
+     */
+    private static final double DOUBLE_DEFAULT = Double.longBitsToDouble(0x7FF8DEADBEEF0000L);
+    private static final float FLOAT_DEFAULT = Float.intBitsToFloat(0x7FC0BEEF);
+
+    /**
+     * Double.toString的格式：[-]d.ddd或者[-]d.dddE[-]n
+     */
+    private static final Pattern DOUBLE_FORMAT = Pattern.compile("-?(\\d+\\.\\d+|\\d\\.\\d+E-?\\d+)");
+
+    /**
+     * JDK 19开始Double.toString也输出最短的十进制数，此时格式化的结果应该与它完全相同
+     */
+    private static final boolean JDK_SHORTEST = "2.0E23".equals(Double.toString(2e23));
+
+    @Test
+    public void parseRandomBits() {
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            double d = Double.longBitsToDouble(random.nextLong());
+            assertParses(Double.toString(d));
+            if (!Double.isNaN(d) && !Double.isInfinite(d))
+                assertParses(BigDecimal.valueOf(d).toPlainString());
+
+            float f = Float.intBitsToFloat(random.nextInt());
+            assertParses(Float.toString(f));
+        }
+    }
+
+    @Test
+    public void parseRandomDigits() {
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            StringBuilder sb = new StringBuilder();
+
+            if (random.nextInt(4) == 0)
+                sb.append(random.nextBoolean() ? '-' : '+');
+
+            int digits = 1 + random.nextInt(random.nextBoolean() ? 19 : 40);
+            int point = random.nextInt(digits + 2) - 1;
+            for (int j = 0; j < digits; j++) {
+                if (j == point)
+                    sb.append('.');
+                sb.append((char) ('0' + random.nextInt(10)));
+            }
+
+            if (random.nextBoolean())
+                sb.append(random.nextBoolean() ? 'e' : 'E').append(random.nextInt(700) - 350);
+
+            assertParses(sb.toString());
+        }
+    }
+
+    @Test
+    public void parseHalfwayCases() {
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < RANDOM_CASES / 20; i++) {
+            double d = Math.abs(Double.longBitsToDouble(random.nextLong()));
+            if (Double.isNaN(d) || Double.isInfinite(d) || d == Double.MAX_VALUE)
+                continue;
+
+            assertHalfway(new BigDecimal(d), new BigDecimal(Math.nextUp(d)));
+
+            float f = Math.abs(Float.intBitsToFloat(random.nextInt()));
+            if (Float.isNaN(f) || Float.isInfinite(f) || f == Float.MAX_VALUE)
+                continue;
+
+            assertHalfway(new BigDecimal(f), new BigDecimal(Math.nextUp(f)));
+        }
+
+        // 最大值与无穷大之间、最小的非规格化数与0之间
+        assertHalfway(new BigDecimal(Double.MAX_VALUE),
+                new BigDecimal(Double.MAX_VALUE).add(new BigDecimal(Math.ulp(Double.MAX_VALUE))));
+        assertHalfway(BigDecimal.ZERO, new BigDecimal(Double.MIN_VALUE));
+        assertHalfway(BigDecimal.ZERO, new BigDecimal(Float.MIN_VALUE));
+    }
+
+    @Test
+    public void parseFloatSweep() {
+        // 按固定步长遍历float的所有位模式
+        for (long bits = 0; bits <= 0xFFFFFFFFL; bits += 16411) {
+            float f = Float.intBitsToFloat((int) bits);
+            assertParses(Float.toString(f));
+        }
+    }
+
+    @Test
+    public void parseSpecialForms() {
+        String[] cases = {
+                "0", "-0", "+0", "0.0", "-0.0", "00000.00000e-99999", "1e-400", "1e400", "-1e400",
+                "4.9e-324", "2.4703282292062327e-324", "2.4703282292062328e-324",
+                "1.7976931348623157e308", "1.7976931348623158e308", "1.7976931348623159e308",
+                "1.4e-45", "7.006492321624085e-46", "3.4028235e38", "3.4028236e38",
+                "9007199254740993", "9007199254740993.0000000000000000000000001",
+                "123456789012345678901234567890", "0.1", "0.3", ".5", "5.", "+.5e1", "-5.E-1",
+                "NaN", "-NaN", "+NaN", "Infinity", "-Infinity", "+Infinity",
+                "0x1p0", "0x1.8p1", "-0X1.FFFFFFFFFFFFFP1023", "0x1p-1074", "0x.8p1", "0x1.0p-1075f", "0x1p3d",
+                "1f", "1F", "1d", "1D", "1.5e3f", "-2.5E-3D", "NaNf", "Infinityd",
+                " 1.5", "1.5 ", "\t\n 1.5e2 \r", "\u00001\u0000", " NaN ", " -Infinity\t",
+                "", " ", "+", "-", ".", "e5", "1e", "1e+", "1.2.3", "--1", "+-1", "1e5.5", "0x", "0x1", "0x1.p",
+                "NaNx", "Infinit", "infinity", "nan", "1_000", "1,5", "1 5", "1ff", "1fd", " 1", "１"
+        };
+
+        for (String s : cases)
+            assertParses(s);
+
+        assertEquals(DOUBLE_DEFAULT, NumberUtils.parseDouble((CharSequence) null, DOUBLE_DEFAULT), 0);
+        assertEquals(FLOAT_DEFAULT, NumberUtils.parseFloat((CharSequence) null, FLOAT_DEFAULT), 0);
+        assertEquals(Double.valueOf(1.5), NumberUtils.toDouble("1.5", null));
+        assertEquals(null, NumberUtils.toDouble("abc", null));
+        assertEquals(Float.valueOf(2.5f), NumberUtils.toFloat("abc", 2.5f));
+    }
+
+    @Test
+    public void parseRange() {
+        StringBuilder sb = new StringBuilder("xx-1.25e3yy");
+        byte[] bytes = ascii(sb.toString());
+
+        assertEquals(-1250.0, NumberUtils.parseDouble(sb, 2, 7, DOUBLE_DEFAULT), 0);
+        assertEquals(-1250.0, NumberUtils.parseDouble(bytes, 2, 7, DOUBLE_DEFAULT), 0);
+        assertEquals(-1250.0f, NumberUtils.parseFloat(sb, 2, 7, FLOAT_DEFAULT), 0);
+        assertEquals(-1250.0f, NumberUtils.parseFloat(bytes, 2, 7, FLOAT_DEFAULT), 0);
+
+        assertEquals(-1.0, NumberUtils.parseDouble(bytes, 2, 2, DOUBLE_DEFAULT), 0);
+        assertEquals(DOUBLE_DEFAULT, NumberUtils.parseDouble(bytes, 2, 8, DOUBLE_DEFAULT), 0);
+        assertEquals(DOUBLE_DEFAULT, NumberUtils.parseDouble(bytes, 2, 0, DOUBLE_DEFAULT), 0);
+    }
+
+    @Test
+    public void formatRandomBits() {
+        Random random = new Random(SEED);
+        char[] buf = new char[DoubleToDecimal.MAX_CHARS + 3];
+
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            double d = Double.longBitsToDouble(random.nextLong());
+            assertFormats(d, buf);
+
+            // 整数、小数位较少的数
+            assertFormats(random.nextInt() / 1000.0, buf);
+            assertFormats((double) random.nextLong(), buf);
+        }
+    }
+
+    @Test
+    public void formatSpecialValues() {
+        double[] cases = {
+                0.0, -0.0, 1.0, -1.0, 0.1, 0.3, 1e7, 9999999.0, 1e-3, 9.99e-4, 1e22, 1e23, 2e23,
+                Double.MIN_VALUE, 2 * Double.MIN_VALUE, Double.MIN_NORMAL, Math.nextAfter(Double.MIN_NORMAL, 0),
+                Double.MAX_VALUE, Math.PI, Math.E, 1.0 / 3, 2.0 / 3, 9007199254740993.0, 1.0E-322,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+        };
+        char[] buf = new char[DoubleToDecimal.MAX_CHARS + 3];
+
+        for (double d : cases) {
+            assertFormats(d, buf);
+            assertFormats(-d, buf);
+        }
+
+        assertEquals("NaN", NumberUtils.formatDouble(Double.NaN));
+        assertEquals("-Infinity", NumberUtils.formatDouble(Double.NEGATIVE_INFINITY));
+        assertEquals("-0.0", NumberUtils.formatDouble(-0.0));
+        assertEquals("4.9E-324", NumberUtils.formatDouble(Double.MIN_VALUE));
+        assertEquals("1.0E7", NumberUtils.formatDouble(1e7));
+        assertEquals("0.001", NumberUtils.formatDouble(1e-3));
+        assertEquals("2.0E23", NumberUtils.formatDouble(2e23));
+        assertEquals("1.0E23", NumberUtils.formatDouble(1e23));
+        assertEquals("1.7976931348623157E308", NumberUtils.formatDouble(Double.MAX_VALUE));
+    }
+
+    /**
+     * 对照Double.parseDouble和Float.parseFloat，通过CharSequence和byte[]两种方式解析
+     */
+    private static void assertParses(String s) {
+        double expectedDouble;
+        try {
+            expectedDouble = Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            expectedDouble = DOUBLE_DEFAULT;
+        }
+
+        float expectedFloat;
+        try {
+            expectedFloat = Float.parseFloat(s);
+        } catch (NumberFormatException e) {
+            expectedFloat = FLOAT_DEFAULT;
+        }
+
+        assertBits(s, expectedDouble, NumberUtils.parseDouble(s, DOUBLE_DEFAULT));
+        assertBits(s, expectedFloat, NumberUtils.parseFloat(s, FLOAT_DEFAULT));
+
+        // 非ASCII字符的字节形式与字符串不同，只对照字符串的结果
+        if (!isAscii(s))
+            return;
+
+        byte[] bytes = ascii("##" + s + "##");
+        assertBits(s, expectedDouble, NumberUtils.parseDouble(bytes, 2, s.length(), DOUBLE_DEFAULT));
+        assertBits(s, expectedFloat, NumberUtils.parseFloat(bytes, 2, s.length(), FLOAT_DEFAULT));
+    }
+
+    /**
+     * 两个相邻浮点数的中点，以及中点上下各差一点点的数
+     */
+    private static void assertHalfway(BigDecimal low, BigDecimal high) {
+        BigDecimal half = low.add(high).divide(BigDecimal.valueOf(2));
+        BigDecimal tiny = half.ulp().divide(BigDecimal.TEN);
+
+        assertParses(half.toString());
+        assertParses(half.toPlainString());
+        assertParses(half.subtract(tiny).toString());
+        assertParses(half.add(tiny).toString());
+        assertParses(half.round(MathContext.DECIMAL64).toString());
+    }
+
+    /**
+     * 检查格式化的结果可以还原、是最短的、与Double.toString的格式相同，且三种输出方式的结果一致
+     */
+    private static void assertFormats(double d, char[] buf) {
+        String s = NumberUtils.formatDouble(d);
+
+        int length = NumberUtils.formatDouble(d, buf, 3);
+        assertEquals(s, new String(buf, 3, length));
+
+        StringBuilder sb = new StringBuilder("x");
+        try {
+            NumberUtils.formatDouble(d, sb);
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+        assertEquals("x" + s, sb.toString());
+
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            assertEquals(Double.toString(d), s);
+            return;
+        }
+
+        assertEquals(s, Double.doubleToLongBits(d), Double.doubleToLongBits(Double.parseDouble(s)));
+        assertTrue(s, DOUBLE_FORMAT.matcher(s).matches());
+
+        double abs = Math.abs(d);
+        assertEquals(s, abs != 0 && (abs < 1e-3 || abs >= 1e7), s.indexOf('E') >= 0);
+
+        if (d != 0)
+            assertShortest(d, s);
+
+        if (JDK_SHORTEST)
+            assertEquals(Double.toString(d), s);
+    }
+
+    /**
+     * 检查s是能还原为d的位数最少的十进制数中离d最近的一个，一样近时取末位为偶数的。
+     * 最少只有1位时与Double.toString一样取2位
+     */
+    private static void assertShortest(double d, String s) {
+        BigDecimal exact = new BigDecimal(d);
+        int n = Math.max(2, new BigDecimal(s).stripTrailingZeros().precision());
+
+        // 少一位的十进制数都不能还原
+        if (n > 2) {
+            assertTrue(s, exact.round(new MathContext(n - 1, RoundingMode.FLOOR)).doubleValue() != d);
+            assertTrue(s, exact.round(new MathContext(n - 1, RoundingMode.CEILING)).doubleValue() != d);
+        }
+
+        // n位的十进制数中，离d最近的是向下或向上取整的结果
+        BigDecimal floor = exact.round(new MathContext(n, RoundingMode.FLOOR));
+        BigDecimal ceiling = exact.round(new MathContext(n, RoundingMode.CEILING));
+        boolean floorIn = floor.doubleValue() == d;
+        boolean ceilingIn = ceiling.doubleValue() == d;
+
+        BigDecimal expected = floorIn && ceilingIn
+                ? exact.round(new MathContext(n, RoundingMode.HALF_EVEN))
+                : floorIn ? floor : ceiling;
+
+        assertEquals(s, 0, new BigDecimal(s).compareTo(expected));
+    }
+
+    private static void assertBits(String s, double expected, double actual) {
+        if (Double.doubleToRawLongBits(expected) != Double.doubleToRawLongBits(actual))
+            fail("\"" + s + "\" : expected " + expected + " but was " + actual);
+    }
+
+    private static void assertBits(String s, float expected, float actual) {
+        if (Float.floatToRawIntBits(expected) != Float.floatToRawIntBits(actual))
+            fail("\"" + s + "\" : expected " + expected + " but was " + actual);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0x7F)
+                return false;
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        try {
+            return s.getBytes("ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}